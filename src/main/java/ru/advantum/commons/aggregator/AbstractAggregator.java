@@ -1,6 +1,7 @@
 package ru.advantum.commons.aggregator;
 
 import ru.advantum.commons.aggregator.collectors.MedianCollector;
+import ru.advantum.commons.aggregator.collectors.VarianceCollector;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -8,57 +9,169 @@ import java.util.function.*;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
+/**
+ * Базовый класс агрегаторов. Описание запроса (добавление задач, parallel(), adaptive()) не потокобезопасно;
+ * после него один экземпляр можно выполнять из нескольких потоков через {@link #explain()} и {@link #aggregate()}.
+ *
+ * @param <T> Тип объектов в коллекции.
+ * @param <R> Тип результата.
+ */
 public abstract class AbstractAggregator<T, R> {
 
     protected final Collection<T> collection;
     protected boolean parallel = false;
+    protected boolean adaptive = false;
     protected final List<AggregationTask<T>> tasks = new ArrayList<>();
+    // План, построенный explain(), вместе с числом задач, для которого он построен
+    private volatile CachedPlan cachedPlan;
+    private volatile ExecutionPlan lastPlan;
+
+    /**
+     * Неизменяемая пара (план, число задач): читается и заменяется одной записью в volatile-поле,
+     * поэтому при параллельных вызовах aggregate() план не сочетается с чужим числом задач.
+     */
+    private static final class CachedPlan {
+        private final ExecutionPlan plan;
+        private final int tasks;
+
+        CachedPlan(ExecutionPlan plan, int tasks) {
+            this.plan = plan;
+            this.tasks = tasks;
+        }
+    }
 
     protected AbstractAggregator(Collection<T> collection) {
         this.collection = collection;
     }
 
-    public abstract R aggregate();
+    /**
+     * Выполняет запрос по плану, который возвращает {@link #explain()}.
+     * @return Результат агрегации.
+     */
+    public R aggregate() {
+        return aggregate(explain());
+    }
+
+    /**
+     * Выполняет запрос по заданному плану, например ранее полученному через {@link #explain()}.
+     * @param plan План выполнения.
+     * @return Результат агрегации.
+     */
+    public R aggregate(ExecutionPlan plan) {
+        Objects.requireNonNull(plan, "plan");
+        lastPlan = plan;
+        return execute(plan.getStrategy());
+    }
+
+    /**
+     * Выполняет запрос по заданной стратегии.
+     */
+    protected abstract R execute(ExecutionPlan.Strategy strategy);
+
+    /**
+     * Возвращает коллектор, вычисляющий тот же результат, что и {@link #aggregate()}.
+     * Используется для совместного выполнения нескольких запросов за один проход.
+     */
+    protected abstract Collector<T, ?, R> collector();
 
     protected abstract AbstractAggregator<T, R> newInstance(Collection<T> collection, boolean parallel, List<AggregationTask<T>> tasks);
 
+    /**
+     * Включает параллельную обработку. Явно заданная стратегия отменяет ранее вызванный {@link #adaptive()}.
+     */
     public AbstractAggregator<T, R> parallel() {
         this.parallel = true;
+        this.adaptive = false;
+        this.cachedPlan = null;
         return this;
     }
 
+    /**
+     * Включает адаптивный режим: стратегия выполнения (последовательно, параллельно по диапазонам
+     * или с конкурентной картой групп) выбирается планировщиком и запоминается до изменения
+     * состава задач или размера коллекции. Отменяет ранее вызванный {@link #parallel()}.
+     */
+    public AbstractAggregator<T, R> adaptive() {
+        this.adaptive = true;
+        this.cachedPlan = null;
+        return this;
+    }
+
+    /**
+     * Возвращает план, по которому будет выполнен {@link #aggregate()}, не выполняя запрос.
+     * В адаптивном режиме для оценки стоимости строки функции задач вызываются на выборке до 1024 элементов;
+     * построенный план переиспользуется, пока не изменятся состав задач или размер коллекции.
+     * Если план строят одновременно несколько потоков, каждый получает согласованный план, а в кэше остается один из них.
+     * @return План выполнения с выбранной стратегией и причиной выбора.
+     */
+    public ExecutionPlan explain() {
+        CachedPlan cached = cachedPlan;
+        if (cached == null || cached.tasks != tasks.size() || cached.plan.getRows() != collection.size()) {
+            int taskCount = tasks.size();
+            cached = new CachedPlan(buildPlan(), taskCount);
+            cachedPlan = cached;
+        }
+        return cached.plan;
+    }
+
+    private ExecutionPlan buildPlan() {
+        if (!adaptive) {
+            return ExecutionPlanner.fixed(collection, parallel);
+        }
+        return ExecutionPlanner.plan(collection, collector(), classifier(), tasks);
+    }
+
+    /**
+     * @return План, по которому выполнен последний вызов {@link #aggregate()}, или null, если запрос не выполнялся.
+     */
+    public ExecutionPlan lastPlan() {
+        return lastPlan;
+    }
+
+    /**
+     * @return Классификатор группы или null для запроса без группировки.
+     */
+    protected Function<? super T, ?> classifier() {
+        return null;
+    }
+
     public AbstractAggregator<T, R> count(String key) {
-        tasks.add(new AggregationTask<>(key, Collectors.counting()));
+        tasks.add(new AggregationTask<>(key, Collectors.counting(), RetractableAccumulators.count()));
         return this;
     }
 
     public AbstractAggregator<T, R> distinct(String key, Function<T, ?> mapper) {
-        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.toSet())));
+        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.toSet()), RetractableAccumulators.distinct(mapper), true));
         return this;
     }
 
     public <N extends Number> AbstractAggregator<T, R> sum(String key, Function<T, N> mapper) {
-        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.reducing(BigDecimal.ZERO, n -> new BigDecimal(n.toString()), BigDecimal::add))));
+        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.reducing(BigDecimal.ZERO, n -> new BigDecimal(n.toString()), BigDecimal::add)), RetractableAccumulators.sum(mapper)));
         return this;
     }
 
     public <N extends Number> AbstractAggregator<T, R> average(String key, Function<T, N> mapper) {
-        tasks.add(new AggregationTask<>(key, Collectors.averagingDouble(n -> mapper.apply(n).doubleValue())));
+        tasks.add(new AggregationTask<>(key, Collectors.averagingDouble(n -> mapper.apply(n).doubleValue()), RetractableAccumulators.average(mapper)));
+        return this;
+    }
+
+    public <N extends Number> AbstractAggregator<T, R> variance(String key, Function<T, N> mapper) {
+        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, new VarianceCollector<>()), RetractableAccumulators.variance(mapper)));
         return this;
     }
 
     public <U extends Comparable<? super U>> AbstractAggregator<T, R> min(String key, Function<T, U> mapper) {
-        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.minBy(Comparator.naturalOrder()))));
+        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.minBy(Comparator.naturalOrder())), RetractableAccumulators.min(mapper)));
         return this;
     }
 
     public <U extends Comparable<? super U>> AbstractAggregator<T, R> max(String key, Function<T, U> mapper) {
-        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.maxBy(Comparator.naturalOrder()))));
+        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.maxBy(Comparator.naturalOrder())), RetractableAccumulators.max(mapper)));
         return this;
     }
 
     public <N extends Number & Comparable<N>> AbstractAggregator<T, R> median(String key, Function<T, N> mapper) {
-        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, new MedianCollector<>())));
+        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, new MedianCollector<>()), RetractableAccumulators.median(mapper), true));
         return this;
     }
 
@@ -72,29 +185,12 @@ public abstract class AbstractAggregator<T, R> {
                 .map(task -> (Collector<T, Object, Object>) task.getCollector())
                 .collect(Collectors.toList());
 
-        Supplier<List<Object>> supplier = () -> collectors.stream()
-                .map(c -> c.supplier().get())
-                .collect(Collectors.toList());
-
-        BiConsumer<List<Object>, T> accumulator = (accs, item) -> {
-            for (int i = 0; i < collectors.size(); i++) {
-                collectors.get(i).accumulator().accept(accs.get(i), item);
-            }
-        };
-
-        BinaryOperator<List<Object>> combiner = (accs1, accs2) -> {
-            List<Object> combined = new ArrayList<>(accs1.size());
-            for (int i = 0; i < collectors.size(); i++) {
-                combined.add(collectors.get(i).combiner().apply(accs1.get(i), accs2.get(i)));
-            }
-            return combined;
-        };
-
-        Function<List<Object>, AggregationResult> finisher = accs -> {
+        return CompositeCollectors.fuse(collectors, values -> {
             AggregationResult result = new AggregationResult();
-            for (int i = 0; i < collectors.size(); i++) {
-                Object finalValue = collectors.get(i).finisher().apply(accs.get(i));
+            for (int i = 0; i < values.size(); i++) {
+                Object finalValue = values.get(i);
                 String key = tasks.get(i).getAlias();
+                // Распаковываем Optional значения от коллекторов вроде min/max
                 if (finalValue instanceof Optional) {
                     ((Optional<?>) finalValue).ifPresent(v -> result.put(key, v));
                 } else {
@@ -102,7 +198,6 @@ public abstract class AbstractAggregator<T, R> {
                 }
             }
             return result;
-        };
-        return Collector.of(supplier, accumulator, combiner, finisher);
+        });
     }
 }
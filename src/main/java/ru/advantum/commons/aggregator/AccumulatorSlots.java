@@ -0,0 +1,136 @@
+package ru.advantum.commons.aggregator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Плоское хранилище примитивных накопителей групп: каждая группа занимает фиксированное число 64-битных ячеек,
+ * которые читаются и записываются как long или как double (через {@link Double#doubleToRawLongBits(double)}).
+ * Может располагаться в куче или вне ее (direct {@link ByteBuffer}), чтобы не нагружать сборщик мусора.
+ * Номера ячеек - long, чтобы произведение числа групп на ширину группы не переполнялось.
+ */
+abstract class AccumulatorSlots {
+
+    // Наибольшая длина массива, которую гарантированно выделяют JVM
+    static final long MAX_HEAP_SLOTS = Integer.MAX_VALUE - 8;
+
+    static AccumulatorSlots onHeap(long initialSlots) {
+        return new HeapSlots(initialSlots);
+    }
+
+    static AccumulatorSlots offHeap(long initialSlots) {
+        return new OffHeapSlots(initialSlots, OffHeapSlots.DEFAULT_PAGE_SHIFT);
+    }
+
+    /**
+     * Хранилище вне кучи со страницами по 2^pageShift ячеек.
+     */
+    static AccumulatorSlots offHeap(long initialSlots, int pageShift) {
+        return new OffHeapSlots(initialSlots, pageShift);
+    }
+
+    abstract long getLong(long slot);
+
+    abstract void setLong(long slot, long value);
+
+    double get(long slot) {
+        return Double.longBitsToDouble(getLong(slot));
+    }
+
+    void set(long slot, double value) {
+        setLong(slot, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Гарантирует, что хранилище вмещает указанное число ячеек.
+     * @throws IllegalStateException если хранилище не может вместить столько ячеек.
+     */
+    abstract void ensureCapacity(long slots);
+
+    private static final class HeapSlots extends AccumulatorSlots {
+        private long[] values;
+
+        HeapSlots(long initialSlots) {
+            this.values = new long[(int) Math.min(Math.max(1, initialSlots), MAX_HEAP_SLOTS)];
+        }
+
+        @Override
+        long getLong(long slot) {
+            return values[(int) slot];
+        }
+
+        @Override
+        void setLong(long slot, long value) {
+            values[(int) slot] = value;
+        }
+
+        @Override
+        void ensureCapacity(long slots) {
+            if (slots > values.length) {
+                if (slots > MAX_HEAP_SLOTS) {
+                    throw new IllegalStateException("On-heap accumulator slots capacity exceeded: " + slots
+                            + " slots requested, use offHeap()");
+                }
+                values = Arrays.copyOf(values, (int) Math.min(Math.max((long) values.length * 2, slots), MAX_HEAP_SLOTS));
+            }
+        }
+    }
+
+    /**
+     * Хранилище вне кучи из страниц фиксированного размера, поэтому не ограничено емкостью одного ByteBuffer.
+     * Пока ячеек меньше одной страницы, единственная страница растет удвоением.
+     */
+    private static final class OffHeapSlots extends AccumulatorSlots {
+        // 2^24 ячеек - страницы по 128 МБ
+        static final int DEFAULT_PAGE_SHIFT = 24;
+
+        private final int pageShift;
+        private final int pageSlots;
+        private final long pageMask;
+        private ByteBuffer[] pages;
+
+        OffHeapSlots(long initialSlots, int pageShift) {
+            this.pageShift = pageShift;
+            this.pageSlots = 1 << pageShift;
+            this.pageMask = pageSlots - 1;
+            this.pages = new ByteBuffer[]{allocate((int) Math.min(Math.max(1, initialSlots), pageSlots))};
+            ensureCapacity(initialSlots);
+        }
+
+        @Override
+        long getLong(long slot) {
+            return pages[(int) (slot >>> pageShift)].getLong((int) (slot & pageMask) * Long.BYTES);
+        }
+
+        @Override
+        void setLong(long slot, long value) {
+            pages[(int) (slot >>> pageShift)].putLong((int) (slot & pageMask) * Long.BYTES, value);
+        }
+
+        @Override
+        void ensureCapacity(long slots) {
+            int firstPageSlots = pages[0].capacity() / Long.BYTES;
+            if (pages.length == 1 && firstPageSlots < pageSlots && slots > firstPageSlots) {
+                ByteBuffer grown = allocate((int) Math.min(Math.max((long) firstPageSlots * 2, slots), pageSlots));
+                grown.put(pages[0].clear());
+                pages[0] = grown.clear();
+            }
+            long requiredPages = (slots + pageSlots - 1) >>> pageShift;
+            if (requiredPages > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Off-heap accumulator slots capacity exceeded: " + slots + " slots requested");
+            }
+            if (requiredPages > pages.length) {
+                int oldLength = pages.length;
+                pages = Arrays.copyOf(pages, (int) requiredPages);
+                for (int i = oldLength; i < pages.length; i++) {
+                    pages[i] = allocate(pageSlots);
+                }
+            }
+        }
+
+        private static ByteBuffer allocate(int slots) {
+            return ByteBuffer.allocateDirect(slots * Long.BYTES).order(ByteOrder.nativeOrder());
+        }
+    }
+}
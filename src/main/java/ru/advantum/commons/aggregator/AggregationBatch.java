@@ -0,0 +1,107 @@
+package ru.advantum.commons.aggregator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Пакетное выполнение нескольких независимых запросов за один проход по коллекции.
+ * Запросы описываются обычными агрегаторами ({@link Aggregator#of}, {@link Aggregator#groupBy})
+ * над той же коллекцией, после чего каждый элемент передается сразу всем запросам.
+ *
+ * @param <T> Тип объектов в коллекции.
+ */
+public final class AggregationBatch<T> {
+
+    private final Collection<T> collection;
+    private final List<AbstractAggregator<T, ?>> queries = new ArrayList<>();
+    private boolean parallel = false;
+
+    AggregationBatch(Collection<T> collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * Включает параллельную обработку коллекции.
+     * @return Текущий экземпляр AggregationBatch.
+     */
+    public AggregationBatch<T> parallel() {
+        this.parallel = true;
+        return this;
+    }
+
+    /**
+     * Добавляет запрос в пакет.
+     * @param aggregator Агрегатор, построенный над коллекцией этого пакета.
+     * @param <R> Тип результата запроса.
+     * @return Дескриптор для получения результата запроса из {@link Results}.
+     * @throws IllegalArgumentException если агрегатор построен над другой коллекцией.
+     */
+    public <R> Query<R> add(AbstractAggregator<T, R> aggregator) {
+        if (aggregator.collection != collection) {
+            throw new IllegalArgumentException("Aggregator is built over a different collection");
+        }
+        queries.add(aggregator);
+        return new Query<>(this, queries.size() - 1);
+    }
+
+    /**
+     * Выполняет все запросы пакета за один проход.
+     * @return Результаты запросов.
+     */
+    public Results execute() {
+        // Стираем типы коллекторов запросов для единообразной обработки, как в композитном коллекторе задач
+        @SuppressWarnings("unchecked")
+        List<Collector<T, Object, Object>> collectors = queries.stream()
+                .map(query -> (Collector<T, Object, Object>) query.collector())
+                .collect(Collectors.toList());
+
+        Stream<T> stream = parallel ? collection.parallelStream() : collection.stream();
+        return new Results(this, stream.collect(CompositeCollectors.fuse(collectors, values -> values)));
+    }
+
+    /**
+     * Дескриптор запроса внутри пакета.
+     * @param <R> Тип результата запроса.
+     */
+    public static final class Query<R> {
+        private final AggregationBatch<?> batch;
+        private final int index;
+
+        private Query(AggregationBatch<?> batch, int index) {
+            this.batch = batch;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Результаты выполнения пакета, по одному на каждый запрос.
+     */
+    public static final class Results {
+        private final AggregationBatch<?> batch;
+        private final List<Object> results;
+
+        private Results(AggregationBatch<?> batch, List<Object> results) {
+            this.batch = batch;
+            this.results = results;
+        }
+
+        /**
+         * Возвращает результат запроса.
+         * @param query Дескриптор, полученный из {@link AggregationBatch#add}.
+         * @param <R> Тип результата запроса.
+         * @return Результат запроса.
+         * @throws IllegalArgumentException если запрос добавлен в другой пакет.
+         */
+        @SuppressWarnings("unchecked")
+        public <R> R get(Query<R> query) {
+            if (query.batch != batch) {
+                throw new IllegalArgumentException("Query belongs to a different batch");
+            }
+            return (R) results.get(query.index);
+        }
+    }
+}
@@ -48,11 +48,34 @@ public final class AggregationResult {
         return (T) results.get(key);
     }
 
+    /**
+     * Преобразует сумму, вычисленную в double, в значение результата: BigDecimal для конечной суммы,
+     * Double для NaN и бесконечностей, которые BigDecimal не представляет.
+     */
+    static Object sumValue(double sum) {
+        return Double.isFinite(sum) ? BigDecimal.valueOf(sum) : (Object) sum;
+    }
+
     public BigDecimal getSum(String key) {
-        BigDecimal bigDecimal = get(key);
+        Object value = get(key);
+        if (value instanceof Double) {
+            throw new ArithmeticException("Sum '" + key + "' is not finite: " + value + ", use getDoubleSum()");
+        }
+        BigDecimal bigDecimal = (BigDecimal) value;
         if (bigDecimal==null) return BigDecimal.ZERO;
         return bigDecimal;
     }
+
+    /**
+     * Возвращает сумму как double. В отличие от {@link #getSum(String)} работает и для не конечных сумм,
+     * вычисленных в double.
+     * @param key Ключ агрегации.
+     * @return Сумма или null, если ключ не найден.
+     */
+    public Double getDoubleSum(String key) {
+        Number value = get(key);
+        return value == null ? null : value.doubleValue();
+    }
     public <T extends Number> T getSum(String key, Class<T> targetType) {
         BigDecimal sum = getSum(key);
         if (targetType == Integer.class) {
@@ -92,10 +115,18 @@ public final class AggregationResult {
         return get(key);
     }
 
+    public Double getVariance(String key) {
+        return get(key);
+    }
+
     public <T> T getMedian(String key) {
         return get(key);
     }
 
+    public Double getSumOfSquares(String key) {
+        return get(key);
+    }
+
     /**
      * Возвращает коллекцию уникальных значений.
      * @param key Ключ агрегации.
@@ -1,5 +1,6 @@
 package ru.advantum.commons.aggregator;
 
+import java.util.function.Supplier;
 import java.util.stream.Collector;
 
 /**
@@ -10,10 +11,22 @@ public class AggregationTask<T> {
     private final String alias;
 //    private final Function<T, ?> fieldExtractor;
     private final Collector<T, ?, ?> collector;
+    private final Supplier<RetractableAccumulator<T>> retractable;
+    private final boolean mergeHeavy;
 
     public AggregationTask(String alias, Collector<T, ?, ?> collector) {
+        this(alias, collector, null);
+    }
+
+    AggregationTask(String alias, Collector<T, ?, ?> collector, Supplier<RetractableAccumulator<T>> retractable) {
+        this(alias, collector, retractable, false);
+    }
+
+    AggregationTask(String alias, Collector<T, ?, ?> collector, Supplier<RetractableAccumulator<T>> retractable, boolean mergeHeavy) {
         this.alias = alias;
         this.collector = collector;
+        this.retractable = retractable;
+        this.mergeHeavy = mergeHeavy;
     }
 
     public String getAlias() {
@@ -24,6 +37,23 @@ public class AggregationTask<T> {
     public Collector<T, ?, ?> getCollector() {
         return collector;
     }
-}
 
+    /**
+     * @return true, если накопитель хранит значения элементов (median, distinct),
+     * и слияние частичных результатов при параллельной обработке пропорционально числу строк.
+     */
+    boolean isMergeHeavy() {
+        return mergeHeavy;
+    }
 
+    /**
+     * Создает накопитель для инкрементального пересчета.
+     * @throws UnsupportedOperationException если задача не поддерживает удаление элементов.
+     */
+    RetractableAccumulator<T> newRetractableAccumulator() {
+        if (retractable == null) {
+            throw new UnsupportedOperationException("Task '" + alias + "' does not support incremental aggregation");
+        }
+        return retractable.get();
+    }
+}
@@ -1,13 +1,14 @@
 package ru.advantum.commons.aggregator;
 
 import ru.advantum.commons.aggregator.collectors.MedianCollector;
+import ru.advantum.commons.aggregator.collectors.VarianceCollector;
+import ru.advantum.commons.aggregator.kernels.NumericKernels;
 
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.function.BiConsumer;
-import java.util.function.BinaryOperator;
 import java.util.function.Function;
-import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -21,15 +22,10 @@ import java.util.stream.Stream;
 //public class Aggregator<T> {
 public final class Aggregator<T> extends AbstractAggregator<T, AggregationResult> {
 
-    private final Collection<T> collection;
-    private final boolean parallel;
-    private final List<AggregationTask<T>> tasks;
-
     public Aggregator(Collection<T> collection, boolean parallel, List<AggregationTask<T>> tasks) {
         super(collection);
-        this.collection = collection;
         this.parallel = parallel;
-        this.tasks = tasks;
+        this.tasks.addAll(tasks);
     }
 
     /**
@@ -43,20 +39,60 @@ public final class Aggregator<T> extends AbstractAggregator<T, AggregationResult
     }
 
     /**
-     * Включает параллельную обработку коллекции.
-     * @return Текущий экземпляр Aggregator.
+     * Точка входа для пакетного выполнения нескольких запросов над коллекцией за один проход.
+     * @param collection Коллекция для агрегации.
+     * @param <T> Тип элементов.
+     * @return Новый экземпляр AggregationBatch.
+     */
+    public static <T> AggregationBatch<T> batch(Collection<T> collection) {
+        return new AggregationBatch<>(collection);
+    }
+
+    /**
+     * Точка входа для агрегации массива double без упаковки элементов.
+     * @param values Массив для агрегации.
+     * @return Новый экземпляр DoubleArrayAggregator.
+     */
+    public static DoubleArrayAggregator of(double[] values) {
+        return new DoubleArrayAggregator(values, NumericKernels.get());
+    }
+
+    /**
+     * Точка входа для агрегации массива long без упаковки элементов.
+     * @param values Массив для агрегации.
+     * @return Новый экземпляр LongArrayAggregator.
+     */
+    public static LongArrayAggregator of(long[] values) {
+        return new LongArrayAggregator(values, NumericKernels.get());
+    }
+
+    /**
+     * Включает параллельную обработку коллекции. Явно заданная стратегия отменяет адаптивный режим.
+     * @return Новый экземпляр Aggregator с теми же задачами.
      */
+    @Override
     public Aggregator<T> parallel() {
         return new Aggregator<>(this.collection, true, this.tasks);
     }
 
+    /**
+     * Включает адаптивный выбор между последовательной и параллельной обработкой.
+     * @return Текущий экземпляр Aggregator.
+     * @see #explain()
+     */
+    @Override
+    public Aggregator<T> adaptive() {
+        super.adaptive();
+        return this;
+    }
+
     /**
      * Добавляет задачу на подсчет количества элементов.
      * @param key Ключ для результата.
      * @return Текущий экземпляр Aggregator.
      */
     public Aggregator<T> count(String key) {
-        tasks.add(new AggregationTask<>(key, Collectors.counting()));
+        tasks.add(new AggregationTask<>(key, Collectors.counting(), RetractableAccumulators.count()));
         return this;
     }
 
@@ -72,7 +108,7 @@ public final class Aggregator<T> extends AbstractAggregator<T, AggregationResult
                 mapper,
                 Collectors.reducing(BigDecimal.ZERO, n -> new BigDecimal(n.toString()), BigDecimal::add)
         );
-        tasks.add(new AggregationTask<>(key, collector));
+        tasks.add(new AggregationTask<>(key, collector, RetractableAccumulators.sum(mapper)));
         return this;
     }
 
@@ -84,7 +120,19 @@ public final class Aggregator<T> extends AbstractAggregator<T, AggregationResult
      * @return Текущий экземпляр Aggregator.
      */
     public <N extends Number> Aggregator<T> average(String key, Function<T, N> mapper) {
-        tasks.add(new AggregationTask<>(key, Collectors.averagingDouble(n -> mapper.apply(n).doubleValue())));
+        tasks.add(new AggregationTask<>(key, Collectors.averagingDouble(n -> mapper.apply(n).doubleValue()), RetractableAccumulators.average(mapper)));
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на вычисление дисперсии генеральной совокупности.
+     * @param key Ключ для результата.
+     * @param mapper Функция для извлечения числового значения из объекта.
+     * @param <N> Тип числового значения.
+     * @return Текущий экземпляр Aggregator.
+     */
+    public <N extends Number> Aggregator<T> variance(String key, Function<T, N> mapper) {
+        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, new VarianceCollector<>()), RetractableAccumulators.variance(mapper)));
         return this;
     }
 
@@ -96,7 +144,7 @@ public final class Aggregator<T> extends AbstractAggregator<T, AggregationResult
      * @return Текущий экземпляр Aggregator.
      */
     public <U extends Comparable<? super U>> Aggregator<T> min(String key, Function<T, U> mapper) {
-        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.minBy(Comparator.naturalOrder()))));
+        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.minBy(Comparator.naturalOrder())), RetractableAccumulators.min(mapper)));
         return this;
     }
 
@@ -108,7 +156,7 @@ public final class Aggregator<T> extends AbstractAggregator<T, AggregationResult
      * @return Текущий экземпляр Aggregator.
      */
     public <U extends Comparable<? super U>> Aggregator<T> max(String key, Function<T, U> mapper) {
-        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.maxBy(Comparator.naturalOrder()))));
+        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, Collectors.maxBy(Comparator.naturalOrder())), RetractableAccumulators.max(mapper)));
         return this;
     }
 
@@ -120,7 +168,7 @@ public final class Aggregator<T> extends AbstractAggregator<T, AggregationResult
      * @return Текущий экземпляр Aggregator.
      */
     public <N extends Number & Comparable<N>> Aggregator<T> median(String key, Function<T, N> mapper) {
-        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, new MedianCollector<>())));
+        tasks.add(new AggregationTask<>(key, Collectors.mapping(mapper, new MedianCollector<>()), RetractableAccumulators.median(mapper), true));
         return this;
     }
 
@@ -133,75 +181,48 @@ public final class Aggregator<T> extends AbstractAggregator<T, AggregationResult
      */
     public Aggregator<T> distinct(String key, Function<T, ?> mapper) {
         tasks.add(new AggregationTask<>(key,
-                Collectors.mapping(mapper, Collectors.toSet())
+                Collectors.mapping(mapper, Collectors.toSet()),
+                RetractableAccumulators.distinct(mapper),
+                true
         ));
         return this;
     }
 
     /**
-     * Запускает процесс агрегации.
+     * Запускает процесс агрегации. Запрос без группировки выполняет CONCURRENT_GROUPING как RANGE_PARALLEL.
      * @return {@link AggregationResult} с результатами всех вычислений.
      */
-    public AggregationResult aggregate() {
+    @Override
+    protected AggregationResult execute(ExecutionPlan.Strategy strategy) {
         if (tasks.isEmpty()) {
             return new AggregationResult();
         }
 
-        // Создаем список нижестоящих коллекторов из каждой задачи, стирая типы для единообразной обработки
-        @SuppressWarnings("unchecked")
-        List<Collector<T, Object, Object>> collectors = tasks.stream()
-                .map(task -> (Collector<T, Object, Object>) task.getCollector())
-                .collect(Collectors.toList());
-
-        // Supplier для списка промежуточных аккумуляторов
-        Supplier<List<Object>> supplier = () -> collectors.stream()
-                .map(c -> c.supplier().get())
-                .collect(Collectors.toList());
-
-        // Accumulator, который передает элемент каждому нижестоящему аккумулятору
-        BiConsumer<List<Object>, T> accumulator = (accs, item) -> {
-            for (int i = 0; i < collectors.size(); i++) {
-                collectors.get(i).accumulator().accept(accs.get(i), item);
-            }
-        };
-
-        // Combiner для параллельной обработки
-        BinaryOperator<List<Object>> combiner = (accs1, accs2) -> {
-            List<Object> combined = new ArrayList<>(accs1.size());
-            for (int i = 0; i < collectors.size(); i++) {
-                combined.add(collectors.get(i).combiner().apply(accs1.get(i), accs2.get(i)));
-            }
-            return combined;
-        };
-
-        // Finisher, который применяет финальное преобразование к каждому результату и помещает его в AggregationResult
-        Function<List<Object>, AggregationResult> finisher = accs -> {
-            AggregationResult result = new AggregationResult();
-            for (int i = 0; i < collectors.size(); i++) {
-                Object finalValue = collectors.get(i).finisher().apply(accs.get(i));
-                String key = tasks.get(i).getAlias();
-
-                // Распаковываем Optional значения от коллекторов вроде min/max
-                if (finalValue instanceof Optional) {
-                    ((Optional<?>) finalValue).ifPresent(v -> result.put(key, v));
-                } else {
-                    result.put(key, finalValue);
-                }
-            }
-            return result;
-        };
-
-        // Собираем финальный, композитный коллектор
-        Collector<T, List<Object>, AggregationResult> finalCollector = Collector.of(
-                supplier,
-                accumulator,
-                combiner,
-                finisher
-        );
+        boolean parallelRun = strategy != ExecutionPlan.Strategy.SEQUENTIAL;
+        Stream<T> stream = parallelRun ? collection.parallelStream() : collection.stream();
+        return stream.collect(collector());
+    }
 
-        Stream<T> stream = parallel ? collection.parallelStream() : collection.stream();
-        return stream.collect(finalCollector);
+    /**
+     * Строит композитный коллектор, выполняющий все задачи за один проход.
+     * @return Коллектор, возвращающий {@link AggregationResult}.
+     */
+    @Override
+    protected Collector<T, ?, AggregationResult> collector() {
+        return buildCompositeCollector();
+    }
+
+    /**
+     * Создает инкрементально поддерживаемый результат, заполненный элементами коллекции.
+     * Дальнейшие изменения данных отражаются через add/remove/update без повторного прохода.
+     * @return Новый экземпляр IncrementalAggregation.
+     */
+    public IncrementalAggregation<T> incremental() {
+        IncrementalAggregation<T> incremental = new IncrementalAggregation<>(new ArrayList<>(tasks));
+        collection.forEach(incremental::add);
+        return incremental;
     }
+
     @SafeVarargs
     public static <T> GroupingAggregator<T, List<Object>> groupBy(Collection<T> collection, Function<? super T, ?>... classifiers) {
         Function<T, List<Object>> compositeClassifier = t ->
@@ -210,9 +231,31 @@ public final class Aggregator<T> extends AbstractAggregator<T, AggregationResult
                         .collect(Collectors.toList());
         return new GroupingAggregator<>(collection, compositeClassifier, false, List.of());
     }
+    /**
+     * Создает агрегатор с группировкой по ключу int без упаковки ключей при группировке.
+     * @param collection Коллекция для агрегации.
+     * @param classifier Функция для извлечения ключа группы.
+     * @param <T> Тип элементов.
+     * @return Новый экземпляр PrimitiveGroupingAggregator.
+     */
+    public static <T> PrimitiveGroupingAggregator<T, Integer> groupByInt(Collection<T> collection, ToIntFunction<? super T> classifier) {
+        return new PrimitiveGroupingAggregator<>(collection, classifier::applyAsInt, key -> (int) key);
+    }
+
+    /**
+     * Создает агрегатор с группировкой по ключу long без упаковки ключей при группировке.
+     * @param collection Коллекция для агрегации.
+     * @param classifier Функция для извлечения ключа группы.
+     * @param <T> Тип элементов.
+     * @return Новый экземпляр PrimitiveGroupingAggregator.
+     */
+    public static <T> PrimitiveGroupingAggregator<T, Long> groupByLong(Collection<T> collection, ToLongFunction<? super T> classifier) {
+        return new PrimitiveGroupingAggregator<>(collection, classifier, key -> key);
+    }
+
     @Override
     protected AbstractAggregator<T, AggregationResult> newInstance(Collection<T> collection, boolean parallel, List<AggregationTask<T>> aggregationTasks) {
-        return new Aggregator<>(collection, parallel, tasks);
+        return new Aggregator<>(collection, parallel, aggregationTasks);
     }
 
 }
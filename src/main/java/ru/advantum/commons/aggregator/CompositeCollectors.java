@@ -0,0 +1,62 @@
+package ru.advantum.commons.aggregator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Объединение нескольких коллекторов в один, выполняющий их все за один проход.
+ */
+final class CompositeCollectors {
+
+    private CompositeCollectors() {}
+
+    /**
+     * Объединяет коллекторы: каждый элемент передается всем коллекторам, а их финальные значения
+     * в исходном порядке передаются в finisher.
+     * @param collectors Коллекторы со стертыми типами.
+     * @param finisher Преобразование списка финальных значений в результат.
+     * @param <T> Тип элемента.
+     * @param <R> Тип результата.
+     * @return Композитный коллектор.
+     */
+    static <T, R> Collector<T, List<Object>, R> fuse(List<Collector<T, Object, Object>> collectors,
+                                                     Function<List<Object>, R> finisher) {
+        // Supplier для списка промежуточных аккумуляторов
+        Supplier<List<Object>> supplier = () -> collectors.stream()
+                .map(c -> c.supplier().get())
+                .collect(Collectors.toList());
+
+        // Accumulator, который передает элемент каждому нижестоящему аккумулятору
+        BiConsumer<List<Object>, T> accumulator = (accs, item) -> {
+            for (int i = 0; i < collectors.size(); i++) {
+                collectors.get(i).accumulator().accept(accs.get(i), item);
+            }
+        };
+
+        // Combiner для параллельной обработки
+        BinaryOperator<List<Object>> combiner = (accs1, accs2) -> {
+            List<Object> combined = new ArrayList<>(accs1.size());
+            for (int i = 0; i < collectors.size(); i++) {
+                combined.add(collectors.get(i).combiner().apply(accs1.get(i), accs2.get(i)));
+            }
+            return combined;
+        };
+
+        // Finisher, который применяет финальное преобразование каждого коллектора
+        Function<List<Object>, R> compositeFinisher = accs -> {
+            List<Object> values = new ArrayList<>(accs.size());
+            for (int i = 0; i < collectors.size(); i++) {
+                values.add(collectors.get(i).finisher().apply(accs.get(i)));
+            }
+            return finisher.apply(values);
+        };
+
+        return Collector.of(supplier, accumulator, combiner, compositeFinisher);
+    }
+}
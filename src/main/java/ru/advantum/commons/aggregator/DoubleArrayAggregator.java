@@ -0,0 +1,130 @@
+package ru.advantum.commons.aggregator;
+
+import ru.advantum.commons.aggregator.kernels.NumericKernels;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Агрегатор для массива double. Все вычисления выполняются ядрами {@link NumericKernels}
+ * (векторными, если доступен Vector API, иначе скалярными) без упаковки элементов.
+ * Сумма вычисляется за один проход и используется задачами sum и average совместно.
+ */
+public final class DoubleArrayAggregator {
+
+    private final double[] values;
+    private final NumericKernels kernels;
+    private final Map<String, Function<Pass, Object>> tasks = new LinkedHashMap<>();
+
+    DoubleArrayAggregator(double[] values, NumericKernels kernels) {
+        this.values = values;
+        this.kernels = kernels;
+    }
+
+    /**
+     * Добавляет задачу на подсчет количества элементов.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public DoubleArrayAggregator count(String key) {
+        tasks.put(key, a -> (long) a.values.length);
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на вычисление суммы (результат - BigDecimal).
+     * Если сумма не конечна (во входе есть NaN или бесконечность), результат сохраняется как Double
+     * и доступен через {@link AggregationResult#getDoubleSum(String)}.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public DoubleArrayAggregator sum(String key) {
+        tasks.put(key, a -> AggregationResult.sumValue(a.sum()));
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на вычисление среднего значения.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public DoubleArrayAggregator average(String key) {
+        tasks.put(key, a -> a.values.length == 0 ? 0.0 : a.sum() / a.values.length);
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на поиск минимального значения. Для пустого массива результат отсутствует.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public DoubleArrayAggregator min(String key) {
+        tasks.put(key, a -> a.values.length == 0 ? null : kernels.min(a.values));
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на поиск максимального значения. Для пустого массива результат отсутствует.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public DoubleArrayAggregator max(String key) {
+        tasks.put(key, a -> a.values.length == 0 ? null : kernels.max(a.values));
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на подсчет элементов, попадающих в диапазон [from, to].
+     * @param key Ключ для результата.
+     * @param from Нижняя граница (включительно).
+     * @param to Верхняя граница (включительно).
+     * @return Текущий экземпляр агрегатора.
+     */
+    public DoubleArrayAggregator countWhere(String key, double from, double to) {
+        tasks.put(key, a -> kernels.countWhere(a.values, from, to));
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на вычисление суммы квадратов.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public DoubleArrayAggregator sumOfSquares(String key) {
+        tasks.put(key, a -> kernels.sumOfSquares(a.values));
+        return this;
+    }
+
+    /**
+     * Запускает процесс агрегации.
+     * @return {@link AggregationResult} с результатами всех вычислений.
+     */
+    public AggregationResult aggregate() {
+        AggregationResult result = new AggregationResult();
+        Pass pass = new Pass(values);
+        tasks.forEach((key, task) -> result.put(key, task.apply(pass)));
+        return result;
+    }
+
+    /**
+     * Состояние одного вызова {@link #aggregate()}: сумма вычисляется при первом запросе и переиспользуется.
+     */
+    private final class Pass {
+        private final double[] values;
+        private double sum;
+        private boolean summed;
+
+        Pass(double[] values) {
+            this.values = values;
+        }
+
+        double sum() {
+            if (!summed) {
+                sum = kernels.sum(values);
+                summed = true;
+            }
+            return sum;
+        }
+    }
+}
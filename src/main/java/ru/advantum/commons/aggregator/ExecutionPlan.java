@@ -0,0 +1,92 @@
+package ru.advantum.commons.aggregator;
+
+import java.util.Locale;
+
+/**
+ * План выполнения запроса: выбранная стратегия, причина выбора и оценки, на которых он основан.
+ * Возвращается методом {@link AbstractAggregator#explain()}.
+ */
+public final class ExecutionPlan {
+
+    /**
+     * Стратегия выполнения запроса.
+     */
+    public enum Strategy {
+        /** Последовательный проход по коллекции. */
+        SEQUENTIAL,
+        /** Параллельный проход: коллекция делится на диапазоны, частичные результаты сливаются. */
+        RANGE_PARALLEL,
+        /** Параллельный проход с общей конкурентной картой групп вместо слияния карт потоков. */
+        CONCURRENT_GROUPING
+    }
+
+    private final Strategy strategy;
+    private final String reason;
+    private final boolean adaptive;
+    private final long rows;
+    private final int parallelism;
+    private final double costPerRowNanos;
+    private final long estimatedGroups;
+
+    ExecutionPlan(Strategy strategy, String reason, boolean adaptive, long rows, int parallelism,
+                  double costPerRowNanos, long estimatedGroups) {
+        this.strategy = strategy;
+        this.reason = reason;
+        this.adaptive = adaptive;
+        this.rows = rows;
+        this.parallelism = parallelism;
+        this.costPerRowNanos = costPerRowNanos;
+        this.estimatedGroups = estimatedGroups;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * @return true, если стратегия выбрана планировщиком, false - если задана явно.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return Оценка стоимости обработки одной строки в наносекундах (по статической модели задач
+     * или по времени на выборке, если функции задач дорогие) или -1, если оценка не выполнялась.
+     */
+    public double getCostPerRowNanos() {
+        return costPerRowNanos;
+    }
+
+    /**
+     * @return Оценка числа групп или -1, если запрос без группировки или оценка не выполнялась.
+     */
+    public long getEstimatedGroups() {
+        return estimatedGroups;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionPlan{" +
+                "strategy=" + strategy +
+                ", reason='" + reason + '\'' +
+                ", adaptive=" + adaptive +
+                ", rows=" + rows +
+                ", parallelism=" + parallelism +
+                ", costPerRowNanos=" + String.format(Locale.ROOT, "%.1f", costPerRowNanos) +
+                ", estimatedGroups=" + estimatedGroups +
+                '}';
+    }
+}
@@ -0,0 +1,206 @@
+package ru.advantum.commons.aggregator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Выбор стратегии выполнения запроса по размеру входа, составу задач, оценке стоимости строки
+ * и, для группировки, оценке числа групп по выборке.
+ * <p>
+ * Стоимость строки берется из статической модели по составу задач. Время обработки выборки
+ * учитывается, только если оно во много раз больше модели, то есть функции задач действительно дорогие:
+ * при первом запросе код еще не скомпилирован JIT, и время меньшего порядка объясняется прогревом.
+ */
+final class ExecutionPlanner {
+
+    // Ниже этого размера накладные расходы fork-join заведомо больше выигрыша
+    static final int MIN_PARALLEL_ROWS = 10_000;
+    // Минимальная оценка работы на поток, при которой параллельный проход окупается
+    static final long MIN_PARALLEL_WORK_NANOS = 1_000_000L;
+    // Во сколько раз больше работы требуется, если слияние частичных результатов копирует значения
+    static final int MERGE_HEAVY_FACTOR = 4;
+    // Доля групп от числа строк, начиная с которой слияние карт потоков дороже общей конкурентной карты
+    static final int HIGH_CARDINALITY_DIVISOR = 16;
+    static final int SAMPLE_SIZE = 1024;
+    // Проходы по выборке для прогрева JIT, не участвующие в оценке
+    static final int WARMUP_ROUNDS = 3;
+    // Проходы по выборке, из которых берется минимальное время
+    static final int MEASURE_ROUNDS = 5;
+    // Стоимость строки для задачи с постоянным состоянием (count, sum, average, variance, min, max)
+    static final int TASK_COST_NANOS = 40;
+    // Стоимость строки для задачи, хранящей значения (median, distinct)
+    static final int HEAVY_TASK_COST_NANOS = 60;
+    // Стоимость вычисления ключа и поиска группы
+    static final int GROUPING_COST_NANOS = 50;
+    // Во сколько раз время на выборке должно превышать модель, чтобы не объясняться холодным кодом
+    static final int COLD_CODE_FACTOR = 20;
+
+    private ExecutionPlanner() {}
+
+    /**
+     * План для стратегии, заданной явно через parallel().
+     */
+    static ExecutionPlan fixed(Collection<?> collection, boolean parallel) {
+        return new ExecutionPlan(
+                parallel ? ExecutionPlan.Strategy.RANGE_PARALLEL : ExecutionPlan.Strategy.SEQUENTIAL,
+                parallel ? "parallel() requested explicitly" : "sequential by default, adaptive() not requested",
+                false, collection.size(), ForkJoinPool.getCommonPoolParallelism(), -1, -1);
+    }
+
+    /**
+     * Строит план, измеряя стоимость строки на выборке.
+     * @param collector Коллектор всего запроса; на выборке вызывается только его accumulator.
+     * @param classifier Классификатор группы или null для запроса без группировки.
+     * @param tasks Задачи запроса, по которым строится статическая модель стоимости.
+     */
+    static <T> ExecutionPlan plan(Collection<T> collection, Collector<T, ?, ?> collector,
+                                  Function<? super T, ?> classifier, List<AggregationTask<T>> tasks) {
+        boolean mergeHeavy = tasks.stream().anyMatch(AggregationTask::isMergeHeavy);
+        long rows = collection.size();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        boolean grouped = classifier != null;
+        if (parallelism <= 1 || rows < MIN_PARALLEL_ROWS) {
+            return decide(rows, parallelism, -1, -1, grouped, mergeHeavy);
+        }
+
+        List<T> sample = sample(collection);
+        double model = staticCost(tasks, grouped);
+        double cost = Math.max(model, discountColdCode(measureCost(sample, collector), model));
+        long groups = grouped ? estimateGroups(sample, classifier, rows) : -1;
+        return decide(rows, parallelism, cost, groups, grouped, mergeHeavy);
+    }
+
+    /**
+     * Выбирает стратегию по готовым оценкам, не обращаясь к данным и к пулу потоков.
+     * @param parallelism Число потоков, на которое рассчитывается параллельный проход.
+     * @param cost Стоимость строки в наносекундах или -1, если оценка не выполнялась.
+     * @param groups Оценка числа групп или -1 для запроса без группировки.
+     * @param grouped Есть ли в запросе группировка.
+     * @param mergeHeavy Есть ли задачи, слияние которых пропорционально числу строк.
+     */
+    static ExecutionPlan decide(long rows, int parallelism, double cost, long groups,
+                                boolean grouped, boolean mergeHeavy) {
+        if (parallelism <= 1) {
+            return adaptive(ExecutionPlan.Strategy.SEQUENTIAL, "common pool has a single worker", rows, parallelism, -1, -1);
+        }
+        if (rows < MIN_PARALLEL_ROWS) {
+            return adaptive(ExecutionPlan.Strategy.SEQUENTIAL,
+                    "input of " + rows + " rows is below " + MIN_PARALLEL_ROWS + " rows", rows, parallelism, -1, -1);
+        }
+
+        double workPerThread = rows * cost / parallelism;
+        long required = mergeHeavy ? MIN_PARALLEL_WORK_NANOS * MERGE_HEAVY_FACTOR : MIN_PARALLEL_WORK_NANOS;
+        if (workPerThread < required) {
+            return adaptive(ExecutionPlan.Strategy.SEQUENTIAL,
+                    String.format(Locale.ROOT, "estimated work per thread %.0f ns is below %d ns%s",
+                            workPerThread, required, mergeHeavy ? " required for tasks with value-copying merges" : ""),
+                    rows, parallelism, cost, groups);
+        }
+        if (grouped && groups > rows / HIGH_CARDINALITY_DIVISOR) {
+            return adaptive(ExecutionPlan.Strategy.CONCURRENT_GROUPING,
+                    "high group cardinality (~" + groups + " groups for " + rows + " rows) makes per-thread map merges expensive",
+                    rows, parallelism, cost, groups);
+        }
+        return adaptive(ExecutionPlan.Strategy.RANGE_PARALLEL,
+                String.format(Locale.ROOT, "estimated work per thread %.0f ns outweighs fork-join and merge overhead", workPerThread),
+                rows, parallelism, cost, groups);
+    }
+
+    private static ExecutionPlan adaptive(ExecutionPlan.Strategy strategy, String reason, long rows, int parallelism,
+                                          double cost, long groups) {
+        return new ExecutionPlan(strategy, reason, true, rows, parallelism, cost, groups);
+    }
+
+    /**
+     * Для списков с произвольным доступом берутся равномерно распределенные строки, иначе - первые строки.
+     */
+    private static <T> List<T> sample(Collection<T> collection) {
+        int size = collection.size();
+        List<T> sample = new ArrayList<>(Math.min(size, SAMPLE_SIZE));
+        if (collection instanceof List && collection instanceof RandomAccess) {
+            List<T> list = (List<T>) collection;
+            int step = Math.max(1, size / SAMPLE_SIZE);
+            for (int i = 0; i < size && sample.size() < SAMPLE_SIZE; i += step) {
+                sample.add(list.get(i));
+            }
+        } else {
+            Iterator<T> iterator = collection.iterator();
+            while (iterator.hasNext() && sample.size() < SAMPLE_SIZE) {
+                sample.add(iterator.next());
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Оценка стоимости строки в прогретом коде по составу задач без учета стоимости функций задач.
+     */
+    static double staticCost(List<? extends AggregationTask<?>> tasks, boolean grouped) {
+        double cost = grouped ? GROUPING_COST_NANOS : 0;
+        for (AggregationTask<?> task : tasks) {
+            cost += task.isMergeHeavy() ? HEAVY_TASK_COST_NANOS : TASK_COST_NANOS;
+        }
+        return cost;
+    }
+
+    /**
+     * Измеренное время учитывается, только если оно превышает модель больше, чем в {@link #COLD_CODE_FACTOR} раз;
+     * иначе возвращается 0 и используется модель.
+     */
+    static double discountColdCode(double measured, double model) {
+        return measured > model * COLD_CODE_FACTOR ? measured : 0;
+    }
+
+    /**
+     * Выборка обрабатывается несколько раз, каждый раз в новый контейнер: первые проходы прогревают
+     * JIT, а из остальных берется самый быстрый, чтобы единичная пауза GC или холодный код
+     * не завышали оценку. Стоимость пересчитывается на одну строку.
+     */
+    private static <T, A> double measureCost(List<T> sample, Collector<T, A, ?> collector) {
+        if (sample.isEmpty()) {
+            return 0;
+        }
+        BiConsumer<A, T> accumulator = collector.accumulator();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURE_ROUNDS; round++) {
+            A container = collector.supplier().get();
+            long start = System.nanoTime();
+            for (T item : sample) {
+                accumulator.accept(container, item);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return (double) best / sample.size();
+    }
+
+    /**
+     * Если в выборке мало различных ключей, считается, что встречены почти все группы;
+     * иначе число групп экстраполируется на весь вход.
+     */
+    private static <T> long estimateGroups(List<T> sample, Function<? super T, ?> classifier, long rows) {
+        if (sample.isEmpty()) {
+            return 0;
+        }
+        Set<Object> keys = new HashSet<>();
+        for (T item : sample) {
+            keys.add(classifier.apply(item));
+        }
+        if (keys.size() * 2 < sample.size()) {
+            return keys.size();
+        }
+        return rows * keys.size() / sample.size();
+    }
+}
@@ -2,11 +2,13 @@ package ru.advantum.commons.aggregator;
 
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public final class GroupingAggregator<T, K> extends AbstractAggregator<T, Map<K, AggregationResult>> {
 
@@ -25,8 +27,119 @@ public final class GroupingAggregator<T, K> extends AbstractAggregator<T, Map<K,
     }
 
     @Override
-    public Map<K, AggregationResult> aggregate() {
-        Stream<T> stream = parallel ? collection.parallelStream() : collection.stream();
-        return stream.collect(Collectors.groupingBy(classifier, buildCompositeCollector()));
+    public GroupingAggregator<T, K> parallel() {
+        super.parallel();
+        return this;
+    }
+
+    @Override
+    public GroupingAggregator<T, K> adaptive() {
+        super.adaptive();
+        return this;
+    }
+
+    @Override
+    public GroupingAggregator<T, K> count(String key) {
+        super.count(key);
+        return this;
+    }
+
+    @Override
+    public GroupingAggregator<T, K> distinct(String key, Function<T, ?> mapper) {
+        super.distinct(key, mapper);
+        return this;
+    }
+
+    @Override
+    public <N extends Number> GroupingAggregator<T, K> sum(String key, Function<T, N> mapper) {
+        super.sum(key, mapper);
+        return this;
+    }
+
+    @Override
+    public <N extends Number> GroupingAggregator<T, K> average(String key, Function<T, N> mapper) {
+        super.average(key, mapper);
+        return this;
+    }
+
+    @Override
+    public <N extends Number> GroupingAggregator<T, K> variance(String key, Function<T, N> mapper) {
+        super.variance(key, mapper);
+        return this;
+    }
+
+    @Override
+    public <U extends Comparable<? super U>> GroupingAggregator<T, K> min(String key, Function<T, U> mapper) {
+        super.min(key, mapper);
+        return this;
+    }
+
+    @Override
+    public <U extends Comparable<? super U>> GroupingAggregator<T, K> max(String key, Function<T, U> mapper) {
+        super.max(key, mapper);
+        return this;
+    }
+
+    @Override
+    public <N extends Number & Comparable<N>> GroupingAggregator<T, K> median(String key, Function<T, N> mapper) {
+        super.median(key, mapper);
+        return this;
+    }
+
+    @Override
+    protected Map<K, AggregationResult> execute(ExecutionPlan.Strategy strategy) {
+        switch (strategy) {
+            case CONCURRENT_GROUPING:
+                return collection.parallelStream().collect(Collectors.groupingByConcurrent(classifier, buildCompositeCollector()));
+            case RANGE_PARALLEL:
+                return collection.parallelStream().collect(collector());
+            default:
+                return collection.stream().collect(collector());
+        }
+    }
+
+    @Override
+    protected Function<? super T, ?> classifier() {
+        return classifier;
+    }
+
+    /**
+     * Агрегирует коллекцию, упорядоченную по ключу группировки, выдавая результат каждой группы,
+     * как только начинается следующая. В памяти хранятся накопители только текущей группы.
+     * Если коллекция не упорядочена по ключу, группа с повторяющимся ключом будет выдана несколько раз.
+     * Обработка всегда последовательная.
+     * @return Итератор по парам (ключ группы, результат) в порядке следования групп.
+     */
+    public Iterator<Map.Entry<K, AggregationResult>> aggregateSorted() {
+        return new SortedGroupIterator<>(collection.iterator(), classifier, buildCompositeCollector());
+    }
+
+    /**
+     * Агрегирует коллекцию, упорядоченную по ключу группировки, передавая результат каждой группы
+     * в обработчик сразу после ее завершения.
+     * @param consumer Обработчик пар (ключ группы, результат).
+     * @see #aggregateSorted()
+     */
+    public void aggregateSorted(BiConsumer<? super K, ? super AggregationResult> consumer) {
+        Iterator<Map.Entry<K, AggregationResult>> groups = aggregateSorted();
+        while (groups.hasNext()) {
+            Map.Entry<K, AggregationResult> group = groups.next();
+            consumer.accept(group.getKey(), group.getValue());
+        }
+    }
+
+    @Override
+    protected Collector<T, ?, Map<K, AggregationResult>> collector() {
+        return Collectors.groupingBy(classifier, buildCompositeCollector());
+    }
+
+    /**
+     * Создает инкрементально поддерживаемый результат по группам, заполненный элементами коллекции.
+     * @return Новый экземпляр IncrementalGroupingAggregation.
+     */
+    public IncrementalGroupingAggregation<T, K> incremental() {
+        IncrementalGroupingAggregation<T, K> incremental = new IncrementalGroupingAggregation<>(classifier, tasks);
+        collection.forEach(incremental::add);
+        return incremental;
     }
 }
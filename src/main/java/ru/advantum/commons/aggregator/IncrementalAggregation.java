@@ -0,0 +1,94 @@
+package ru.advantum.commons.aggregator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Инкрементально поддерживаемый результат агрегации.
+ * Позволяет отражать добавление, удаление и изменение отдельных элементов без повторного прохода по коллекции.
+ * Экземпляр не потокобезопасен.
+ *
+ * @param <T> Тип объектов в коллекции.
+ */
+public final class IncrementalAggregation<T> {
+
+    private final List<AggregationTask<T>> tasks;
+    private final List<RetractableAccumulator<T>> accumulators;
+    private long size;
+
+    IncrementalAggregation(List<AggregationTask<T>> tasks) {
+        this.tasks = tasks;
+        this.accumulators = new ArrayList<>(tasks.size());
+        for (AggregationTask<T> task : tasks) {
+            accumulators.add(task.newRetractableAccumulator());
+        }
+    }
+
+    /**
+     * Учитывает новый элемент.
+     * @param item Добавляемый элемент.
+     * @return Текущий экземпляр.
+     */
+    public IncrementalAggregation<T> add(T item) {
+        for (RetractableAccumulator<T> accumulator : accumulators) {
+            accumulator.add(item);
+        }
+        size++;
+        return this;
+    }
+
+    /**
+     * Исключает ранее учтенный элемент. Элемент, который не добавлялся, отклоняется до изменения состояния,
+     * если это можно определить: набор пуст или значение элемента отсутствует в накопителе min, max, median
+     * или distinct. Для задач count, sum, average и variance значения не хранятся, и проверяется только первое.
+     * @param item Удаляемый элемент, равный ранее добавленному.
+     * @return Текущий экземпляр.
+     * @throws IllegalArgumentException если элемент не учтен.
+     */
+    public IncrementalAggregation<T> remove(T item) {
+        if (size == 0) {
+            throw new IllegalArgumentException("Cannot remove " + item + ": no items added");
+        }
+        for (RetractableAccumulator<T> accumulator : accumulators) {
+            if (!accumulator.contains(item)) {
+                throw new IllegalArgumentException("Cannot remove " + item + ": item was not added");
+            }
+        }
+        for (RetractableAccumulator<T> accumulator : accumulators) {
+            accumulator.remove(item);
+        }
+        size--;
+        return this;
+    }
+
+    /**
+     * Заменяет ранее учтенный элемент новым значением.
+     * @param oldItem Прежнее состояние элемента.
+     * @param newItem Новое состояние элемента.
+     * @return Текущий экземпляр.
+     * @throws IllegalArgumentException если прежнее состояние не учтено; в этом случае состояние не меняется.
+     */
+    public IncrementalAggregation<T> update(T oldItem, T newItem) {
+        remove(oldItem);
+        return add(newItem);
+    }
+
+    /**
+     * @return Количество учтенных элементов.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Формирует снимок текущих результатов.
+     * @return {@link AggregationResult} с результатами всех вычислений.
+     */
+    public AggregationResult result() {
+        AggregationResult result = new AggregationResult();
+        for (int i = 0; i < accumulators.size(); i++) {
+            result.put(tasks.get(i).getAlias(), accumulators.get(i).result());
+        }
+        return result;
+    }
+}
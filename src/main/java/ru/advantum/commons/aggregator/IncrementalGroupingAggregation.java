@@ -0,0 +1,88 @@
+package ru.advantum.commons.aggregator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Инкрементально поддерживаемый результат агрегации с группировкой.
+ * Группа создается при первом элементе и удаляется, когда из нее удален последний элемент.
+ * Экземпляр не потокобезопасен.
+ *
+ * @param <T> Тип объектов в коллекции.
+ * @param <K> Тип ключа группы.
+ */
+public final class IncrementalGroupingAggregation<T, K> {
+
+    private final Function<? super T, ? extends K> classifier;
+    private final List<AggregationTask<T>> tasks;
+    private final Map<K, IncrementalAggregation<T>> groups = new HashMap<>();
+
+    IncrementalGroupingAggregation(Function<? super T, ? extends K> classifier, List<AggregationTask<T>> tasks) {
+        this.classifier = classifier;
+        this.tasks = new ArrayList<>(tasks);
+    }
+
+    /**
+     * Учитывает новый элемент в его группе.
+     * @param item Добавляемый элемент.
+     * @return Текущий экземпляр.
+     */
+    public IncrementalGroupingAggregation<T, K> add(T item) {
+        groups.computeIfAbsent(classifier.apply(item), k -> new IncrementalAggregation<>(tasks)).add(item);
+        return this;
+    }
+
+    /**
+     * Исключает ранее учтенный элемент из его группы.
+     * @param item Удаляемый элемент, равный ранее добавленному.
+     * @return Текущий экземпляр.
+     * @throws IllegalArgumentException если группы элемента нет или элемент не учтен
+     * (см. {@link IncrementalAggregation#remove(Object)}).
+     */
+    public IncrementalGroupingAggregation<T, K> remove(T item) {
+        K key = classifier.apply(item);
+        IncrementalAggregation<T> group = groups.get(key);
+        if (group == null) {
+            throw new IllegalArgumentException("Cannot remove " + item + ": group " + key + " does not exist");
+        }
+        if (group.remove(item).size() == 0) {
+            groups.remove(key);
+        }
+        return this;
+    }
+
+    /**
+     * Заменяет ранее учтенный элемент новым значением. Элемент может перейти в другую группу.
+     * @param oldItem Прежнее состояние элемента.
+     * @param newItem Новое состояние элемента.
+     * @return Текущий экземпляр.
+     * @throws IllegalArgumentException если прежнее состояние не учтено; в этом случае состояние не меняется.
+     */
+    public IncrementalGroupingAggregation<T, K> update(T oldItem, T newItem) {
+        remove(oldItem);
+        return add(newItem);
+    }
+
+    /**
+     * Формирует снимок результатов одной группы.
+     * @param key Ключ группы.
+     * @return Результат группы или null, если группа пуста.
+     */
+    public AggregationResult result(K key) {
+        IncrementalAggregation<T> group = groups.get(key);
+        return group == null ? null : group.result();
+    }
+
+    /**
+     * Формирует снимок результатов всех групп.
+     * @return Результаты, сгруппированные по ключу.
+     */
+    public Map<K, AggregationResult> result() {
+        Map<K, AggregationResult> result = new HashMap<>();
+        groups.forEach((key, group) -> result.put(key, group.result()));
+        return result;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.advantum.commons.aggregator;
+
+import ru.advantum.commons.aggregator.kernels.NumericKernels;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Агрегатор для массива long. Все вычисления выполняются ядрами {@link NumericKernels}
+ * (векторными, если доступен Vector API, иначе скалярными) без упаковки элементов.
+ * Сумма вычисляется за один проход и используется задачами sum и average совместно.
+ */
+public final class LongArrayAggregator {
+
+    private final long[] values;
+    private final NumericKernels kernels;
+    private final Map<String, Function<Pass, Object>> tasks = new LinkedHashMap<>();
+
+    LongArrayAggregator(long[] values, NumericKernels kernels) {
+        this.values = values;
+        this.kernels = kernels;
+    }
+
+    /**
+     * Добавляет задачу на подсчет количества элементов.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public LongArrayAggregator count(String key) {
+        tasks.put(key, a -> (long) a.values.length);
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на вычисление суммы (результат - точный BigDecimal).
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public LongArrayAggregator sum(String key) {
+        tasks.put(key, a -> new BigDecimal(a.sum()));
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на вычисление среднего значения.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public LongArrayAggregator average(String key) {
+        tasks.put(key, a -> a.values.length == 0 ? 0.0 : a.sum().doubleValue() / a.values.length);
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на поиск минимального значения. Для пустого массива результат отсутствует.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public LongArrayAggregator min(String key) {
+        tasks.put(key, a -> a.values.length == 0 ? null : kernels.min(a.values));
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на поиск максимального значения. Для пустого массива результат отсутствует.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public LongArrayAggregator max(String key) {
+        tasks.put(key, a -> a.values.length == 0 ? null : kernels.max(a.values));
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на подсчет элементов, попадающих в диапазон [from, to].
+     * @param key Ключ для результата.
+     * @param from Нижняя граница (включительно).
+     * @param to Верхняя граница (включительно).
+     * @return Текущий экземпляр агрегатора.
+     */
+    public LongArrayAggregator countWhere(String key, long from, long to) {
+        tasks.put(key, a -> kernels.countWhere(a.values, from, to));
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на вычисление суммы квадратов.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public LongArrayAggregator sumOfSquares(String key) {
+        tasks.put(key, a -> kernels.sumOfSquares(a.values));
+        return this;
+    }
+
+    /**
+     * Запускает процесс агрегации.
+     * @return {@link AggregationResult} с результатами всех вычислений.
+     */
+    public AggregationResult aggregate() {
+        AggregationResult result = new AggregationResult();
+        Pass pass = new Pass(values);
+        tasks.forEach((key, task) -> result.put(key, task.apply(pass)));
+        return result;
+    }
+
+    /**
+     * Состояние одного вызова {@link #aggregate()}: сумма вычисляется при первом запросе и переиспользуется.
+     */
+    private final class Pass {
+        private final long[] values;
+        private BigInteger sum;
+        private boolean summed;
+
+        Pass(long[] values) {
+            this.values = values;
+        }
+
+        BigInteger sum() {
+            if (!summed) {
+                sum = kernels.sum(values);
+                summed = true;
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.advantum.commons.aggregator;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица с открытой адресацией, отображающая примитивный ключ long в плотный номер группы.
+ * Ключи хранятся в массиве long без упаковки, коллизии разрешаются линейным пробированием.
+ */
+final class LongGroupTable {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    // 0 - свободная ячейка, иначе номер группы + 1
+    private int[] ids;
+    private int mask;
+    private long[] keysById;
+    private int size;
+
+    LongGroupTable(int expectedGroups) {
+        int capacity = 16;
+        while (capacity < (long) expectedGroups * 2 && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        this.keys = new long[capacity];
+        this.ids = new int[capacity];
+        this.mask = capacity - 1;
+        this.keysById = new long[Math.max(16, expectedGroups)];
+    }
+
+    /**
+     * Возвращает номер группы для ключа, создавая новую группу при первом обращении.
+     * Новые группы нумеруются подряд начиная с 0.
+     */
+    int groupOf(long key) {
+        int index = hash(key) & mask;
+        while (true) {
+            int id = ids[index];
+            if (id == 0) {
+                return insert(index, key);
+            }
+            if (keys[index] == key) {
+                return id - 1;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * @return Ключ группы с указанным номером.
+     */
+    long keyOf(int group) {
+        return keysById[group];
+    }
+
+    /**
+     * @return Количество групп.
+     */
+    int size() {
+        return size;
+    }
+
+    private int insert(int index, long key) {
+        int group = size++;
+        keys[index] = key;
+        ids[index] = group + 1;
+        if (group == keysById.length) {
+            keysById = Arrays.copyOf(keysById, group * 2);
+        }
+        keysById[group] = key;
+        // Коэффициент заполнения не выше 0.5 держит цепочки пробирования короткими
+        if (size * 2 > keys.length) {
+            rehash();
+        }
+        return group;
+    }
+
+    private void rehash() {
+        if (keys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Group table capacity exceeded");
+        }
+        int capacity = keys.length << 1;
+        long[] newKeys = new long[capacity];
+        int[] newIds = new int[capacity];
+        int newMask = capacity - 1;
+        for (int group = 0; group < size; group++) {
+            long key = keysById[group];
+            int index = hash(key) & newMask;
+            while (newIds[index] != 0) {
+                index = (index + 1) & newMask;
+            }
+            newKeys[index] = key;
+            newIds[index] = group + 1;
+        }
+        this.keys = newKeys;
+        this.ids = newIds;
+        this.mask = newMask;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,302 @@
+package ru.advantum.commons.aggregator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Агрегатор с группировкой по числовому ключу (int или long).
+ * Ключи хранятся в {@link LongGroupTable} без упаковки, накопители групп - в плоском хранилище
+ * {@link AccumulatorSlots}, которое при необходимости размещается вне кучи.
+ * Ключ упаковывается и {@link AggregationResult} создается только один раз на группу, при формировании результата.
+ * Задачи с {@link ToDoubleFunction} считают в double; для значений long, которые нельзя округлять
+ * (идентификаторы, время в наносекундах), есть задачи sumLong, minLong и maxLong с точным состоянием в long.
+ * Обработка последовательная.
+ *
+ * @param <T> Тип объектов в коллекции.
+ * @param <K> Тип ключа группы в результате.
+ */
+public final class PrimitiveGroupingAggregator<T, K> {
+
+    private enum Kind {
+        COUNT(1), SUM(1), AVERAGE(2), MIN(1), MAX(1),
+        // Старшие и младшие 32 бита суммируются в отдельных ячейках, как в NumericKernels.sum(long[])
+        LONG_SUM(2), LONG_MIN(1), LONG_MAX(1);
+
+        private final int width;
+
+        Kind(int width) {
+            this.width = width;
+        }
+    }
+
+    private static final class Task<T> {
+        private final String alias;
+        private final Kind kind;
+        private final ToDoubleFunction<? super T> mapper;
+        private final ToLongFunction<? super T> longMapper;
+        private final int offset;
+
+        Task(String alias, Kind kind, ToDoubleFunction<? super T> mapper, ToLongFunction<? super T> longMapper, int offset) {
+            this.alias = alias;
+            this.kind = kind;
+            this.mapper = mapper;
+            this.longMapper = longMapper;
+            this.offset = offset;
+        }
+    }
+
+    private static final long LOW_BITS = 0xFFFFFFFFL;
+
+    private final Collection<T> collection;
+    private final ToLongFunction<? super T> classifier;
+    private final LongFunction<K> keyBoxer;
+    private final List<Task<T>> tasks = new ArrayList<>();
+    private int width;
+    private boolean offHeap = false;
+    private int expectedGroups = 16;
+
+    PrimitiveGroupingAggregator(Collection<T> collection, ToLongFunction<? super T> classifier, LongFunction<K> keyBoxer) {
+        this.collection = collection;
+        this.classifier = classifier;
+        this.keyBoxer = keyBoxer;
+    }
+
+    /**
+     * Размещает накопители групп вне кучи.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public PrimitiveGroupingAggregator<T, K> offHeap() {
+        this.offHeap = true;
+        return this;
+    }
+
+    /**
+     * Задает ожидаемое число групп, чтобы избежать перестроений таблицы.
+     * @param expectedGroups Ожидаемое число групп.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public PrimitiveGroupingAggregator<T, K> expectedGroups(int expectedGroups) {
+        this.expectedGroups = Math.max(1, expectedGroups);
+        return this;
+    }
+
+    /**
+     * Добавляет задачу на подсчет количества элементов.
+     * @param key Ключ для результата.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public PrimitiveGroupingAggregator<T, K> count(String key) {
+        return addTask(key, Kind.COUNT, null, null);
+    }
+
+    /**
+     * Добавляет задачу на вычисление суммы. Суммирование выполняется в double с округлением double,
+     * поэтому результат может отличаться от точной суммы {@link Aggregator#groupBy}; для значений long
+     * используйте {@link #sumLong(String, ToLongFunction)}. Конечная сумма сохраняется как BigDecimal,
+     * не конечная - как Double (см. {@link AggregationResult#getDoubleSum(String)}).
+     * @param key Ключ для результата.
+     * @param mapper Функция для извлечения числового значения из объекта.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public PrimitiveGroupingAggregator<T, K> sum(String key, ToDoubleFunction<? super T> mapper) {
+        return addTask(key, Kind.SUM, mapper, null);
+    }
+
+    /**
+     * Добавляет задачу на точное вычисление суммы значений long (результат - BigDecimal, как у {@link Aggregator#groupBy}).
+     * Точность сохраняется для групп до 2^31 строк.
+     * @param key Ключ для результата.
+     * @param mapper Функция для извлечения значения из объекта.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public PrimitiveGroupingAggregator<T, K> sumLong(String key, ToLongFunction<? super T> mapper) {
+        return addTask(key, Kind.LONG_SUM, null, mapper);
+    }
+
+    /**
+     * Добавляет задачу на вычисление среднего значения.
+     * @param key Ключ для результата.
+     * @param mapper Функция для извлечения числового значения из объекта.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public PrimitiveGroupingAggregator<T, K> average(String key, ToDoubleFunction<? super T> mapper) {
+        return addTask(key, Kind.AVERAGE, mapper, null);
+    }
+
+    /**
+     * Добавляет задачу на поиск минимального значения (результат - Double).
+     * @param key Ключ для результата.
+     * @param mapper Функция для извлечения числового значения из объекта.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public PrimitiveGroupingAggregator<T, K> min(String key, ToDoubleFunction<? super T> mapper) {
+        return addTask(key, Kind.MIN, mapper, null);
+    }
+
+    /**
+     * Добавляет задачу на поиск минимального значения long (результат - Long).
+     * @param key Ключ для результата.
+     * @param mapper Функция для извлечения значения из объекта.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public PrimitiveGroupingAggregator<T, K> minLong(String key, ToLongFunction<? super T> mapper) {
+        return addTask(key, Kind.LONG_MIN, null, mapper);
+    }
+
+    /**
+     * Добавляет задачу на поиск максимального значения (результат - Double).
+     * @param key Ключ для результата.
+     * @param mapper Функция для извлечения числового значения из объекта.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public PrimitiveGroupingAggregator<T, K> max(String key, ToDoubleFunction<? super T> mapper) {
+        return addTask(key, Kind.MAX, mapper, null);
+    }
+
+    /**
+     * Добавляет задачу на поиск максимального значения long (результат - Long).
+     * @param key Ключ для результата.
+     * @param mapper Функция для извлечения значения из объекта.
+     * @return Текущий экземпляр агрегатора.
+     */
+    public PrimitiveGroupingAggregator<T, K> maxLong(String key, ToLongFunction<? super T> mapper) {
+        return addTask(key, Kind.LONG_MAX, null, mapper);
+    }
+
+    private PrimitiveGroupingAggregator<T, K> addTask(String key, Kind kind, ToDoubleFunction<? super T> mapper,
+                                                      ToLongFunction<? super T> longMapper) {
+        tasks.add(new Task<>(key, kind, mapper, longMapper, width));
+        width += kind.width;
+        return this;
+    }
+
+    /**
+     * Запускает процесс агрегации.
+     * @return Результаты, сгруппированные по ключу.
+     */
+    public Map<K, AggregationResult> aggregate() {
+        LongGroupTable table = new LongGroupTable(expectedGroups);
+        long initialSlots = (long) Math.max(1, width) * expectedGroups;
+        AccumulatorSlots slots = offHeap ? AccumulatorSlots.offHeap(initialSlots) : AccumulatorSlots.onHeap(initialSlots);
+
+        for (T item : collection) {
+            int groups = table.size();
+            int group = table.groupOf(classifier.applyAsLong(item));
+            long base = (long) group * width;
+            if (group == groups) {
+                slots.ensureCapacity(base + width);
+                init(slots, base);
+            }
+            for (Task<T> task : tasks) {
+                accumulate(slots, base + task.offset, task, item);
+            }
+        }
+
+        Map<K, AggregationResult> result = new HashMap<>(Math.max(16, (int) (table.size() / 0.75f) + 1));
+        for (int group = 0; group < table.size(); group++) {
+            result.put(keyBoxer.apply(table.keyOf(group)), finish(slots, (long) group * width));
+        }
+        return result;
+    }
+
+    private void init(AccumulatorSlots slots, long base) {
+        for (Task<T> task : tasks) {
+            long slot = base + task.offset;
+            switch (task.kind) {
+                case MIN:
+                    slots.set(slot, Double.POSITIVE_INFINITY);
+                    break;
+                case MAX:
+                    slots.set(slot, Double.NEGATIVE_INFINITY);
+                    break;
+                case LONG_MIN:
+                    slots.setLong(slot, Long.MAX_VALUE);
+                    break;
+                case LONG_MAX:
+                    slots.setLong(slot, Long.MIN_VALUE);
+                    break;
+                case AVERAGE:
+                    slots.set(slot + 1, 0.0);
+                    slots.set(slot, 0.0);
+                    break;
+                case LONG_SUM:
+                    slots.setLong(slot + 1, 0L);
+                    slots.setLong(slot, 0L);
+                    break;
+                default:
+                    slots.set(slot, 0.0);
+            }
+        }
+    }
+
+    private static <T> void accumulate(AccumulatorSlots slots, long slot, Task<T> task, T item) {
+        switch (task.kind) {
+            case COUNT:
+                slots.set(slot, slots.get(slot) + 1);
+                break;
+            case SUM:
+                slots.set(slot, slots.get(slot) + task.mapper.applyAsDouble(item));
+                break;
+            case AVERAGE:
+                slots.set(slot, slots.get(slot) + task.mapper.applyAsDouble(item));
+                slots.set(slot + 1, slots.get(slot + 1) + 1);
+                break;
+            case MIN:
+                slots.set(slot, Math.min(slots.get(slot), task.mapper.applyAsDouble(item)));
+                break;
+            case MAX:
+                slots.set(slot, Math.max(slots.get(slot), task.mapper.applyAsDouble(item)));
+                break;
+            case LONG_SUM: {
+                long value = task.longMapper.applyAsLong(item);
+                slots.setLong(slot, slots.getLong(slot) + (value >> 32));
+                slots.setLong(slot + 1, slots.getLong(slot + 1) + (value & LOW_BITS));
+                break;
+            }
+            case LONG_MIN:
+                slots.setLong(slot, Math.min(slots.getLong(slot), task.longMapper.applyAsLong(item)));
+                break;
+            case LONG_MAX:
+                slots.setLong(slot, Math.max(slots.getLong(slot), task.longMapper.applyAsLong(item)));
+                break;
+        }
+    }
+
+    private AggregationResult finish(AccumulatorSlots slots, long base) {
+        AggregationResult result = new AggregationResult();
+        for (Task<T> task : tasks) {
+            long slot = base + task.offset;
+            double value = slots.get(slot);
+            switch (task.kind) {
+                case COUNT:
+                    result.put(task.alias, (long) value);
+                    break;
+                case SUM:
+                    result.put(task.alias, AggregationResult.sumValue(value));
+                    break;
+                case AVERAGE:
+                    result.put(task.alias, value / slots.get(slot + 1));
+                    break;
+                case LONG_SUM:
+                    BigInteger high = BigInteger.valueOf(slots.getLong(slot)).shiftLeft(32);
+                    result.put(task.alias, new BigDecimal(high.add(BigInteger.valueOf(slots.getLong(slot + 1)))));
+                    break;
+                case LONG_MIN:
+                case LONG_MAX:
+                    result.put(task.alias, slots.getLong(slot));
+                    break;
+                default:
+                    result.put(task.alias, value);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.advantum.commons.aggregator;
+
+/**
+ * Накопитель, поддерживающий как добавление, так и удаление элементов.
+ * Используется для инкрементального пересчета результатов без повторного прохода по коллекции.
+ *
+ * @param <T> Тип элемента коллекции
+ */
+interface RetractableAccumulator<T> {
+
+    void add(T item);
+
+    /**
+     * Удаляет ранее добавленный элемент. Вызывается только для элемента, для которого {@link #contains} вернул true.
+     */
+    void remove(T item);
+
+    /**
+     * Проверяет, что значение элемента учтено и его можно удалить.
+     * Накопители, не хранящие значений (count, sum, average, variance), проверить это не могут и возвращают true.
+     */
+    default boolean contains(T item) {
+        return true;
+    }
+
+    /**
+     * @return Текущее значение агрегата или null, если значение отсутствует (например, min пустого набора).
+     */
+    Object result();
+}
@@ -0,0 +1,349 @@
+package ru.advantum.commons.aggregator;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Фабрики накопителей {@link RetractableAccumulator} для стандартных задач агрегации.
+ * count, sum, average и variance обновляются за O(1); min, max и median хранят упорядоченный
+ * мультимножество значений, distinct - счетчики значений, поэтому остаются точными при удалениях.
+ */
+final class RetractableAccumulators {
+
+    private RetractableAccumulators() {}
+
+    static <T> Supplier<RetractableAccumulator<T>> count() {
+        return CountAccumulator::new;
+    }
+
+    static <T, N extends Number> Supplier<RetractableAccumulator<T>> sum(Function<T, N> mapper) {
+        return () -> new SumAccumulator<>(mapper);
+    }
+
+    static <T, N extends Number> Supplier<RetractableAccumulator<T>> average(Function<T, N> mapper) {
+        return () -> new AverageAccumulator<>(mapper);
+    }
+
+    static <T, N extends Number> Supplier<RetractableAccumulator<T>> variance(Function<T, N> mapper) {
+        return () -> new VarianceAccumulator<>(mapper);
+    }
+
+    static <T, U extends Comparable<? super U>> Supplier<RetractableAccumulator<T>> min(Function<T, U> mapper) {
+        return () -> new OrderedAccumulator<>(mapper, true);
+    }
+
+    static <T, U extends Comparable<? super U>> Supplier<RetractableAccumulator<T>> max(Function<T, U> mapper) {
+        return () -> new OrderedAccumulator<>(mapper, false);
+    }
+
+    static <T, N extends Number & Comparable<N>> Supplier<RetractableAccumulator<T>> median(Function<T, N> mapper) {
+        return () -> new MedianAccumulator<>(mapper);
+    }
+
+    static <T> Supplier<RetractableAccumulator<T>> distinct(Function<T, ?> mapper) {
+        return () -> new DistinctAccumulator<>(mapper);
+    }
+
+    private static <K> void increment(Map<K, Integer> counts, K key) {
+        counts.merge(key, 1, Integer::sum);
+    }
+
+    private static <K> boolean decrement(Map<K, Integer> counts, K key) {
+        Integer count = counts.get(key);
+        if (count == null) {
+            return false;
+        }
+        if (count == 1) {
+            counts.remove(key);
+        } else {
+            counts.put(key, count - 1);
+        }
+        return true;
+    }
+
+    private static final class CountAccumulator<T> implements RetractableAccumulator<T> {
+        private long count;
+
+        @Override
+        public void add(T item) {
+            count++;
+        }
+
+        @Override
+        public void remove(T item) {
+            count--;
+        }
+
+        @Override
+        public Object result() {
+            return count;
+        }
+    }
+
+    private static final class SumAccumulator<T, N extends Number> implements RetractableAccumulator<T> {
+        private final Function<T, N> mapper;
+        private BigDecimal sum = BigDecimal.ZERO;
+
+        SumAccumulator(Function<T, N> mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public void add(T item) {
+            sum = sum.add(new BigDecimal(mapper.apply(item).toString()));
+        }
+
+        @Override
+        public void remove(T item) {
+            sum = sum.subtract(new BigDecimal(mapper.apply(item).toString()));
+        }
+
+        @Override
+        public Object result() {
+            return sum;
+        }
+    }
+
+    private static final class AverageAccumulator<T, N extends Number> implements RetractableAccumulator<T> {
+        private final Function<T, N> mapper;
+        private final CompensatedSum sum = new CompensatedSum();
+        private long count;
+
+        AverageAccumulator(Function<T, N> mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public void add(T item) {
+            sum.add(mapper.apply(item).doubleValue());
+            count++;
+        }
+
+        @Override
+        public void remove(T item) {
+            sum.add(-mapper.apply(item).doubleValue());
+            count--;
+        }
+
+        @Override
+        public Object result() {
+            return count == 0 ? 0.0 : sum.value() / count;
+        }
+    }
+
+    /**
+     * Дисперсия по алгоритму Уэлфорда: хранит (количество, среднее, сумма квадратов отклонений),
+     * удаление выполняется точным обратным шагом. В отличие от sumOfSquares/n - mean^2 не теряет
+     * точность на больших значениях с малым разбросом (временные метки, идентификаторы).
+     */
+    private static final class VarianceAccumulator<T, N extends Number> implements RetractableAccumulator<T> {
+        private final Function<T, N> mapper;
+        private long count;
+        private double mean;
+        private double m2;
+
+        VarianceAccumulator(Function<T, N> mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public void add(T item) {
+            double value = mapper.apply(item).doubleValue();
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+
+        @Override
+        public void remove(T item) {
+            double value = mapper.apply(item).doubleValue();
+            if (count <= 1) {
+                count = 0;
+                mean = 0.0;
+                m2 = 0.0;
+                return;
+            }
+            // mean' = (n * mean - x) / (n - 1), записано без умножения на n
+            double previousMean = mean - (value - mean) / (count - 1);
+            m2 = Math.max(0.0, m2 - (value - previousMean) * (value - mean));
+            mean = previousMean;
+            count--;
+        }
+
+        @Override
+        public Object result() {
+            return count == 0 ? null : m2 / count;
+        }
+    }
+
+    private static final class OrderedAccumulator<T, U extends Comparable<? super U>> implements RetractableAccumulator<T> {
+        private final Function<T, U> mapper;
+        private final boolean min;
+        private final TreeMap<U, Integer> counts = new TreeMap<>();
+
+        OrderedAccumulator(Function<T, U> mapper, boolean min) {
+            this.mapper = mapper;
+            this.min = min;
+        }
+
+        @Override
+        public void add(T item) {
+            increment(counts, mapper.apply(item));
+        }
+
+        @Override
+        public void remove(T item) {
+            decrement(counts, mapper.apply(item));
+        }
+
+        @Override
+        public boolean contains(T item) {
+            return counts.containsKey(mapper.apply(item));
+        }
+
+        @Override
+        public Object result() {
+            if (counts.isEmpty()) {
+                return null;
+            }
+            return min ? counts.firstKey() : counts.lastKey();
+        }
+    }
+
+    /**
+     * Медиана на двух упорядоченных мультимножествах: нижняя половина содержит столько же элементов,
+     * сколько верхняя, или на один больше.
+     */
+    private static final class MedianAccumulator<T, N extends Number & Comparable<N>> implements RetractableAccumulator<T> {
+        private final Function<T, N> mapper;
+        private final TreeMap<N, Integer> lower = new TreeMap<>();
+        private final TreeMap<N, Integer> upper = new TreeMap<>();
+        private long lowerSize;
+        private long upperSize;
+
+        MedianAccumulator(Function<T, N> mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public void add(T item) {
+            N value = mapper.apply(item);
+            if (lowerSize == 0 || value.compareTo(lower.lastKey()) <= 0) {
+                increment(lower, value);
+                lowerSize++;
+            } else {
+                increment(upper, value);
+                upperSize++;
+            }
+            rebalance();
+        }
+
+        @Override
+        public void remove(T item) {
+            N value = mapper.apply(item);
+            if (decrement(lower, value)) {
+                lowerSize--;
+            } else if (decrement(upper, value)) {
+                upperSize--;
+            }
+            rebalance();
+        }
+
+        @Override
+        public boolean contains(T item) {
+            N value = mapper.apply(item);
+            return lower.containsKey(value) || upper.containsKey(value);
+        }
+
+        private void rebalance() {
+            if (lowerSize > upperSize + 1) {
+                N moved = lower.lastKey();
+                decrement(lower, moved);
+                increment(upper, moved);
+                lowerSize--;
+                upperSize++;
+            } else if (upperSize > lowerSize) {
+                N moved = upper.firstKey();
+                decrement(upper, moved);
+                increment(lower, moved);
+                upperSize--;
+                lowerSize++;
+            }
+        }
+
+        @Override
+        public Object result() {
+            if (lowerSize == 0) {
+                return null;
+            }
+            if (lowerSize == upperSize) {
+                BigDecimal val1 = toBigDecimal(lower.lastKey());
+                BigDecimal val2 = toBigDecimal(upper.firstKey());
+                return val1.add(val2).divide(BigDecimal.valueOf(2), 10, RoundingMode.HALF_UP);
+            }
+            return toBigDecimal(lower.lastKey());
+        }
+
+        private BigDecimal toBigDecimal(N number) {
+            if (number instanceof BigDecimal) {
+                return (BigDecimal) number;
+            }
+            return new BigDecimal(number.toString());
+        }
+    }
+
+    private static final class DistinctAccumulator<T> implements RetractableAccumulator<T> {
+        private final Function<T, ?> mapper;
+        private final Map<Object, Integer> counts = new HashMap<>();
+
+        DistinctAccumulator(Function<T, ?> mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public void add(T item) {
+            increment(counts, mapper.apply(item));
+        }
+
+        @Override
+        public void remove(T item) {
+            decrement(counts, mapper.apply(item));
+        }
+
+        @Override
+        public boolean contains(T item) {
+            return counts.containsKey(mapper.apply(item));
+        }
+
+        @Override
+        public Object result() {
+            return new HashSet<>(counts.keySet());
+        }
+    }
+
+    /**
+     * Сумма Кэхэна: уменьшает накопление ошибки округления при длинных сериях добавлений и удалений.
+     */
+    private static final class CompensatedSum {
+        private double sum;
+        private double compensation;
+
+        void add(double value) {
+            double y = value - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+        }
+
+        double value() {
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.advantum.commons.aggregator;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Итератор по группам для входа, упорядоченного по ключу группировки.
+ * Группа завершается и выдается, как только ключ очередного элемента отличается от текущего,
+ * поэтому в памяти хранятся накопители только одной группы.
+ *
+ * @param <T> Тип объектов в коллекции.
+ * @param <K> Тип ключа группы.
+ * @param <A> Тип промежуточного накопителя.
+ */
+final class SortedGroupIterator<T, K, A> implements Iterator<Map.Entry<K, AggregationResult>> {
+
+    private final Iterator<T> source;
+    private final Function<? super T, ? extends K> classifier;
+    private final Collector<T, A, AggregationResult> collector;
+    private final BiConsumer<A, T> accumulator;
+
+    private boolean hasPending;
+    private T pending;
+    private K pendingKey;
+
+    SortedGroupIterator(Iterator<T> source, Function<? super T, ? extends K> classifier, Collector<T, A, AggregationResult> collector) {
+        this.source = source;
+        this.classifier = classifier;
+        this.collector = collector;
+        this.accumulator = collector.accumulator();
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasPending;
+    }
+
+    @Override
+    public Map.Entry<K, AggregationResult> next() {
+        if (!hasPending) {
+            throw new NoSuchElementException();
+        }
+        K key = pendingKey;
+        A container = collector.supplier().get();
+        accumulator.accept(container, pending);
+        advance();
+        while (hasPending && Objects.equals(key, pendingKey)) {
+            accumulator.accept(container, pending);
+            advance();
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(key, collector.finisher().apply(container));
+    }
+
+    private void advance() {
+        hasPending = source.hasNext();
+        pending = hasPending ? source.next() : null;
+        pendingKey = hasPending ? classifier.apply(pending) : null;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.advantum.commons.aggregator.collectors;
+
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Коллектор для вычисления дисперсии генеральной совокупности по алгоритму Уэлфорда.
+ * Состояние: [количество, среднее, сумма квадратов отклонений].
+ *
+ * @param <T> Тип элементов, должен быть {@link Number}.
+ */
+public class VarianceCollector<T extends Number> implements Collector<T, double[], Double> {
+
+    @Override
+    public Supplier<double[]> supplier() {
+        return () -> new double[3];
+    }
+
+    @Override
+    public BiConsumer<double[], T> accumulator() {
+        return (state, number) -> {
+            double value = number.doubleValue();
+            state[0]++;
+            double delta = value - state[1];
+            state[1] += delta / state[0];
+            state[2] += delta * (value - state[1]);
+        };
+    }
+
+    @Override
+    public BinaryOperator<double[]> combiner() {
+        return (state1, state2) -> {
+            if (state2[0] == 0) {
+                return state1;
+            }
+            if (state1[0] == 0) {
+                return state2;
+            }
+            double count = state1[0] + state2[0];
+            double delta = state2[1] - state1[1];
+            state1[2] += state2[2] + delta * delta * state1[0] * state2[0] / count;
+            state1[1] += delta * state2[0] / count;
+            state1[0] = count;
+            return state1;
+        };
+    }
+
+    @Override
+    public Function<double[], Double> finisher() {
+        // Для пустого набора дисперсия не определена
+        return state -> state[0] == 0 ? null : state[2] / state[0];
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return Set.of(Characteristics.UNORDERED);
+    }
+}
@@ -0,0 +1,26 @@
+package ru.advantum.commons.aggregator.kernels;
+
+/**
+ * Выбор реализации ядер. Векторная реализация находится в META-INF/versions/17 multi-release jar
+ * и используется, только если она видна на текущей JVM и модуль {@code jdk.incubator.vector}
+ * подключен ({@code --add-modules jdk.incubator.vector}). Иначе используется скалярная реализация.
+ */
+final class KernelSelector {
+
+    static final String VECTOR_KERNELS = "ru.advantum.commons.aggregator.kernels.VectorNumericKernels";
+
+    static final NumericKernels SELECTED = select();
+
+    private KernelSelector() {}
+
+    private static NumericKernels select() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return ScalarNumericKernels.INSTANCE;
+        }
+        try {
+            return (NumericKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return ScalarNumericKernels.INSTANCE;
+        }
+    }
+}
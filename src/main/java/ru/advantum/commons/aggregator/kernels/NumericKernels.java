@@ -0,0 +1,73 @@
+package ru.advantum.commons.aggregator.kernels;
+
+import java.math.BigInteger;
+
+/**
+ * Набор вычислительных ядер для массовой агрегации примитивных массивов.
+ * Реализация выбирается один раз при загрузке класса: на Java 17+ при подключенном модуле
+ * {@code jdk.incubator.vector} используется векторная реализация, иначе - скалярная.
+ */
+public interface NumericKernels {
+
+    /**
+     * Возвращает реализацию, выбранную для текущей JVM.
+     * @return Векторная реализация, если она доступна, иначе скалярная.
+     */
+    static NumericKernels get() {
+        return KernelSelector.SELECTED;
+    }
+
+    /**
+     * Возвращает скалярную реализацию, доступную на любой JVM.
+     * @return Скалярная реализация.
+     */
+    static NumericKernels scalar() {
+        return ScalarNumericKernels.INSTANCE;
+    }
+
+    double sum(double[] values);
+
+    /**
+     * Точная сумма без переполнения: каждое значение делится на старшие (со знаком) и младшие
+     * (без знака) 32 бита, которые суммируются отдельно и не могут переполнить long при длине массива до 2^31.
+     */
+    BigInteger sum(long[] values);
+
+    /**
+     * @return Минимальное значение или {@link Double#POSITIVE_INFINITY} для пустого массива.
+     */
+    double min(double[] values);
+
+    /**
+     * @return Минимальное значение или {@link Long#MAX_VALUE} для пустого массива.
+     */
+    long min(long[] values);
+
+    /**
+     * @return Максимальное значение или {@link Double#NEGATIVE_INFINITY} для пустого массива.
+     */
+    double max(double[] values);
+
+    /**
+     * @return Максимальное значение или {@link Long#MIN_VALUE} для пустого массива.
+     */
+    long max(long[] values);
+
+    /**
+     * Считает количество элементов, попадающих в диапазон [from, to].
+     * Открытые границы задаются бесконечностями.
+     */
+    long countWhere(double[] values, double from, double to);
+
+    /**
+     * Считает количество элементов, попадающих в диапазон [from, to].
+     */
+    long countWhere(long[] values, long from, long to);
+
+    double sumOfSquares(double[] values);
+
+    /**
+     * Сумма квадратов вычисляется в double, чтобы избежать переполнения long.
+     */
+    double sumOfSquares(long[] values);
+}
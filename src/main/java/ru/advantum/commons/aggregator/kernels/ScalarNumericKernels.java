@@ -0,0 +1,120 @@
+package ru.advantum.commons.aggregator.kernels;
+
+import java.math.BigInteger;
+
+/**
+ * Скалярная реализация ядер. Используется на Java 11 и как запасной вариант,
+ * если Vector API недоступен.
+ */
+final class ScalarNumericKernels implements NumericKernels {
+
+    static final ScalarNumericKernels INSTANCE = new ScalarNumericKernels();
+
+    private static final long LOW_BITS = 0xFFFFFFFFL;
+
+    private ScalarNumericKernels() {}
+
+    /**
+     * Собирает сумму из отдельно просуммированных старших и младших 32 бит значений.
+     */
+    static BigInteger combine(long highSum, long lowSum) {
+        return BigInteger.valueOf(highSum).shiftLeft(32).add(BigInteger.valueOf(lowSum));
+    }
+
+    @Override
+    public double sum(double[] values) {
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Override
+    public BigInteger sum(long[] values) {
+        long high = 0L;
+        long low = 0L;
+        for (long value : values) {
+            high += value >> 32;
+            low += value & LOW_BITS;
+        }
+        return combine(high, low);
+    }
+
+    @Override
+    public double min(double[] values) {
+        double min = Double.POSITIVE_INFINITY;
+        for (double value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    @Override
+    public long min(long[] values) {
+        long min = Long.MAX_VALUE;
+        for (long value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    @Override
+    public double max(double[] values) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    @Override
+    public long max(long[] values) {
+        long max = Long.MIN_VALUE;
+        for (long value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    @Override
+    public long countWhere(double[] values, double from, double to) {
+        long count = 0L;
+        for (double value : values) {
+            if (value >= from && value <= to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long countWhere(long[] values, long from, long to) {
+        long count = 0L;
+        for (long value : values) {
+            if (value >= from && value <= to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double sumOfSquares(double[] values) {
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value * value;
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumOfSquares(long[] values) {
+        double sum = 0.0;
+        for (long value : values) {
+            double d = value;
+            sum += d * d;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,182 @@
+package ru.advantum.commons.aggregator.kernels;
+
+import java.math.BigInteger;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Векторная реализация ядер на базе JDK Vector API.
+ * Основной цикл обрабатывает массив блоками по ширине вектора, хвост - скалярно.
+ */
+final class VectorNumericKernels implements NumericKernels {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final long LOW_BITS = 0xFFFFFFFFL;
+
+    @Override
+    public double sum(double[] values) {
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        int bound = DOUBLES.loopBound(values.length);
+        for (; i < bound; i += DOUBLES.length()) {
+            acc = acc.add(DoubleVector.fromArray(DOUBLES, values, i));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public BigInteger sum(long[] values) {
+        LongVector high = LongVector.zero(LONGS);
+        LongVector low = LongVector.zero(LONGS);
+        int i = 0;
+        int bound = LONGS.loopBound(values.length);
+        for (; i < bound; i += LONGS.length()) {
+            LongVector v = LongVector.fromArray(LONGS, values, i);
+            high = high.add(v.lanewise(VectorOperators.ASHR, 32));
+            low = low.add(v.and(LOW_BITS));
+        }
+        long highSum = high.reduceLanes(VectorOperators.ADD);
+        long lowSum = low.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++) {
+            highSum += values[i] >> 32;
+            lowSum += values[i] & LOW_BITS;
+        }
+        return ScalarNumericKernels.combine(highSum, lowSum);
+    }
+
+    @Override
+    public double min(double[] values) {
+        DoubleVector acc = DoubleVector.broadcast(DOUBLES, Double.POSITIVE_INFINITY);
+        int i = 0;
+        int bound = DOUBLES.loopBound(values.length);
+        for (; i < bound; i += DOUBLES.length()) {
+            acc = acc.min(DoubleVector.fromArray(DOUBLES, values, i));
+        }
+        double min = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < values.length; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public long min(long[] values) {
+        LongVector acc = LongVector.broadcast(LONGS, Long.MAX_VALUE);
+        int i = 0;
+        int bound = LONGS.loopBound(values.length);
+        for (; i < bound; i += LONGS.length()) {
+            acc = acc.min(LongVector.fromArray(LONGS, values, i));
+        }
+        long min = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < values.length; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public double max(double[] values) {
+        DoubleVector acc = DoubleVector.broadcast(DOUBLES, Double.NEGATIVE_INFINITY);
+        int i = 0;
+        int bound = DOUBLES.loopBound(values.length);
+        for (; i < bound; i += DOUBLES.length()) {
+            acc = acc.max(DoubleVector.fromArray(DOUBLES, values, i));
+        }
+        double max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < values.length; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    @Override
+    public long max(long[] values) {
+        LongVector acc = LongVector.broadcast(LONGS, Long.MIN_VALUE);
+        int i = 0;
+        int bound = LONGS.loopBound(values.length);
+        for (; i < bound; i += LONGS.length()) {
+            acc = acc.max(LongVector.fromArray(LONGS, values, i));
+        }
+        long max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < values.length; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    @Override
+    public long countWhere(double[] values, double from, double to) {
+        long count = 0L;
+        int i = 0;
+        int bound = DOUBLES.loopBound(values.length);
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, values, i);
+            count += v.compare(VectorOperators.GE, from).and(v.compare(VectorOperators.LE, to)).trueCount();
+        }
+        for (; i < values.length; i++) {
+            if (values[i] >= from && values[i] <= to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long countWhere(long[] values, long from, long to) {
+        long count = 0L;
+        int i = 0;
+        int bound = LONGS.loopBound(values.length);
+        for (; i < bound; i += LONGS.length()) {
+            LongVector v = LongVector.fromArray(LONGS, values, i);
+            count += v.compare(VectorOperators.GE, from).and(v.compare(VectorOperators.LE, to)).trueCount();
+        }
+        for (; i < values.length; i++) {
+            if (values[i] >= from && values[i] <= to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double sumOfSquares(double[] values) {
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        int bound = DOUBLES.loopBound(values.length);
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, values, i);
+            acc = acc.add(v.mul(v));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++) {
+            sum += values[i] * values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumOfSquares(long[] values) {
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        int bound = LONGS.loopBound(values.length);
+        for (; i < bound; i += LONGS.length()) {
+            DoubleVector v = (DoubleVector) LongVector.fromArray(LONGS, values, i)
+                    .convertShape(VectorOperators.L2D, DOUBLES, 0);
+            acc = acc.add(v.mul(v));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++) {
+            double d = values[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+}
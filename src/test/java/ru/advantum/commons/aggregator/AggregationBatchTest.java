@@ -0,0 +1,93 @@
+package ru.advantum.commons.aggregator;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregationBatchTest {
+
+    private final List<Integer> numbers = IntStream.rangeClosed(1, 1000).boxed().collect(Collectors.toList());
+
+    @Test
+    void testBatchMatchesIndividualQueries() {
+        AggregationBatch<Integer> batch = Aggregator.batch(numbers);
+        AggregationBatch.Query<AggregationResult> totals = batch.add(Aggregator.of(numbers)
+                .count("count")
+                .sum("sum", n -> n));
+        AggregationBatch.Query<Map<List<Object>, AggregationResult>> byParity = batch.add(Aggregator.groupBy(numbers, n -> n % 2)
+                .max("max", n -> n));
+        AggregationBatch.Query<Map<List<Object>, AggregationResult>> byRemainder = batch.add(Aggregator.groupBy(numbers, n -> n % 3, n -> n % 5)
+                .count("count")
+                .median("median", n -> n));
+
+        AggregationBatch.Results results = batch.execute();
+
+        AggregationResult total = results.get(totals);
+        assertEquals(1000L, total.getCount("count"));
+        assertEquals(500500, total.getSum("sum", Integer.class));
+
+        Map<List<Object>, AggregationResult> parity = results.get(byParity);
+        assertEquals(1000, (Integer) parity.get(List.of(0)).getMax("max"));
+        assertEquals(999, (Integer) parity.get(List.of(1)).getMax("max"));
+
+        Map<List<Object>, AggregationResult> expected = Aggregator.groupBy(numbers, n -> n % 3, n -> n % 5)
+                .count("count")
+                .median("median", n -> n)
+                .aggregate();
+        Map<List<Object>, AggregationResult> actual = results.get(byRemainder);
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((key, result) -> {
+            assertEquals(result.getCount("count"), actual.get(key).getCount("count"));
+            assertEquals((Object) result.getMedian("median"), actual.get(key).getMedian("median"));
+        });
+    }
+
+    @Test
+    void testSingleTraversal() {
+        AtomicInteger reads = new AtomicInteger();
+        AggregationBatch<Integer> batch = Aggregator.batch(numbers);
+        batch.add(Aggregator.of(numbers).count("count").sum("sum", n -> { reads.incrementAndGet(); return n; }));
+        batch.add(Aggregator.groupBy(numbers, n -> n % 10).average("avg", n -> n));
+
+        batch.execute();
+
+        assertEquals(numbers.size(), reads.get());
+    }
+
+    @Test
+    void testParallelBatch() {
+        AggregationBatch<Integer> batch = Aggregator.batch(numbers).parallel();
+        AggregationBatch.Query<AggregationResult> totals = batch.add(Aggregator.of(numbers).count("count").median("median", n -> n));
+        AggregationBatch.Query<Map<List<Object>, AggregationResult>> groups = batch.add(Aggregator.groupBy(numbers, n -> n % 7).count("count"));
+
+        AggregationBatch.Results results = batch.execute();
+
+        assertEquals(1000L, results.get(totals).getCount("count"));
+        assertEquals(0, results.get(totals).<BigDecimal>getMedian("median").compareTo(new BigDecimal("500.5")));
+        assertEquals(7, results.get(groups).size());
+        assertEquals(1000L, results.get(groups).values().stream().mapToLong(r -> r.getCount("count")).sum());
+    }
+
+    @Test
+    void testForeignCollectionRejected() {
+        AggregationBatch<Integer> batch = Aggregator.batch(numbers);
+        List<Integer> other = new ArrayList<>(numbers);
+        assertThrows(IllegalArgumentException.class, () -> batch.add(Aggregator.of(other).count("count")));
+    }
+
+    @Test
+    void testForeignQueryRejected() {
+        AggregationBatch<Integer> first = Aggregator.batch(numbers);
+        AggregationBatch.Query<AggregationResult> query = first.add(Aggregator.of(numbers).count("count"));
+        AggregationBatch.Results results = Aggregator.batch(numbers).execute();
+        assertThrows(IllegalArgumentException.class, () -> results.get(query));
+    }
+}
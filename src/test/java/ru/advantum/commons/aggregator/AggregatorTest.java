@@ -2,11 +2,19 @@ package ru.advantum.commons.aggregator;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.advantum.commons.aggregator.kernels.NumericKernels;
+
+import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -102,6 +110,144 @@ class AggregatorTest {
         assertEquals(new BigDecimal("300.00"),(employeeResult.getSum("sumSalary")));
     }
 
+    @Test
+    void testSortedGroupingMatchesHashGrouping() {
+        List<TestEmployee> sorted = new ArrayList<>(employees);
+        sorted.sort(Comparator.comparing(TestEmployee::getGroup).thenComparing(TestEmployee::getAge));
+
+        Map<List<Object>, AggregationResult> expected = Aggregator.groupBy(sorted, TestEmployee::getGroup, TestEmployee::getAge)
+                .count("count")
+                .sum("sumSalary", TestEmployee::getSalary)
+                .aggregate();
+
+        List<List<Object>> keys = new ArrayList<>();
+        Aggregator.groupBy(sorted, TestEmployee::getGroup, TestEmployee::getAge)
+                .count("count")
+                .sum("sumSalary", TestEmployee::getSalary)
+                .aggregateSorted((key, result) -> {
+                    keys.add(key);
+                    assertEquals(expected.get(key).getCount("count"), result.getCount("count"));
+                    assertEquals(expected.get(key).getSum("sumSalary"), result.getSum("sumSalary"));
+                });
+
+        assertEquals(List.of(List.of("A", 20), List.of("A", 30), List.of("A", 50), List.of("B", 20), List.of("B", 40)), keys);
+    }
+
+    @Test
+    void testSortedGroupingIsLazy() {
+        List<Integer> values = List.of(1, 1, 2, 2, 2, 3);
+        List<Integer> seen = new ArrayList<>();
+        Iterator<Map.Entry<List<Object>, AggregationResult>> groups = Aggregator.groupBy(values, v -> { seen.add(v); return v; })
+                .count("count")
+                .aggregateSorted();
+
+        Map.Entry<List<Object>, AggregationResult> first = groups.next();
+        assertEquals(List.of(1), first.getKey());
+        assertEquals(2L, first.getValue().getCount("count"));
+        // Прочитан только первый элемент следующей группы
+        assertEquals(3, seen.size());
+
+        assertEquals(3L, groups.next().getValue().getCount("count"));
+        assertEquals(1L, groups.next().getValue().getCount("count"));
+        assertFalse(groups.hasNext());
+        assertThrows(NoSuchElementException.class, groups::next);
+    }
+
+    @Test
+    void testDoubleArrayAggregation() {
+        double[] values = {1.5, 2.5, -4.0, 10.0};
+        AggregationResult result = Aggregator.of(values)
+                .count("count")
+                .sum("sum")
+                .average("avg")
+                .min("min")
+                .max("max")
+                .countWhere("positive", 0.0, Double.POSITIVE_INFINITY)
+                .sumOfSquares("squares")
+                .aggregate();
+
+        assertEquals(4L, result.getCount("count"));
+        assertEquals(0, new BigDecimal("10.0").compareTo(result.getSum("sum")));
+        assertEquals(2.5, result.getAverage("avg"), 0.001);
+        assertEquals(-4.0, (Double) result.getMin("min"), 0.0);
+        assertEquals(10.0, (Double) result.getMax("max"), 0.0);
+        assertEquals(3L, result.getCount("positive"));
+        assertEquals(124.5, result.getSumOfSquares("squares"), 0.001);
+    }
+
+    @Test
+    void testLongArrayAggregation() {
+        AggregationResult result = Aggregator.of(new long[]{5L, -3L, 8L})
+                .sum("sum")
+                .min("min")
+                .max("max")
+                .countWhere("small", Long.MIN_VALUE, 5L)
+                .aggregate();
+
+        assertEquals(new BigDecimal("10"), result.getSum("sum"));
+        assertEquals(-3L, (Long) result.getMin("min"));
+        assertEquals(8L, (Long) result.getMax("max"));
+        assertEquals(2L, result.getCount("small"));
+
+        AggregationResult empty = Aggregator.of(new long[0]).min("min").aggregate();
+        assertNull(empty.getMin("min"));
+    }
+
+    @Test
+    void testLongArraySumIsExact() {
+        long[] values = new long[10];
+        Arrays.fill(values, Long.MAX_VALUE / 5);
+
+        AggregationResult result = Aggregator.of(values).sum("sum").aggregate();
+
+        assertEquals(new BigDecimal("18446744073709551610"), result.getSum("sum"));
+    }
+
+    @Test
+    void testDoubleArrayNonFiniteSum() {
+        AggregationResult result = Aggregator.of(new double[]{1.0, Double.NaN, 2.0})
+                .sum("nan")
+                .aggregate();
+        AggregationResult infinite = Aggregator.of(new double[]{1.0, Double.POSITIVE_INFINITY})
+                .sum("inf")
+                .aggregate();
+
+        assertTrue(result.getDoubleSum("nan").isNaN());
+        assertThrows(ArithmeticException.class, () -> result.getSum("nan"));
+        assertEquals(Double.POSITIVE_INFINITY, infinite.getDoubleSum("inf"));
+        assertEquals(3.0, Aggregator.of(new double[]{1.0, 2.0}).sum("sum").aggregate().getDoubleSum("sum"));
+    }
+
+    @Test
+    void testArraySumIsComputedOnce() {
+        AtomicInteger sums = new AtomicInteger();
+        NumericKernels scalar = NumericKernels.scalar();
+        // Считает вызовы sum, остальные методы передает скалярной реализации
+        NumericKernels counting = (NumericKernels) Proxy.newProxyInstance(NumericKernels.class.getClassLoader(),
+                new Class<?>[]{NumericKernels.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("sum")) {
+                        sums.incrementAndGet();
+                    }
+                    return method.invoke(scalar, args);
+                });
+
+        AggregationResult doubles = new DoubleArrayAggregator(new double[]{1.0, 2.0, 6.0}, counting)
+                .sum("sum")
+                .average("avg")
+                .aggregate();
+        assertEquals(1, sums.get());
+        assertEquals(0, new BigDecimal("9").compareTo(doubles.getSum("sum")));
+        assertEquals(3.0, doubles.getAverage("avg"), 0.0);
+
+        AggregationResult longs = new LongArrayAggregator(new long[]{1L, 2L, 6L}, counting)
+                .average("avg")
+                .sum("sum")
+                .aggregate();
+        assertEquals(2, sums.get());
+        assertEquals(new BigDecimal("9"), longs.getSum("sum"));
+        assertEquals(3.0, longs.getAverage("avg"), 0.0);
+    }
+
     private static class TestEmployee {
         private final int age;
         private final BigDecimal salary;
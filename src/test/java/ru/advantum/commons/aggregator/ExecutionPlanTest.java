@@ -0,0 +1,188 @@
+package ru.advantum.commons.aggregator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionPlanTest {
+
+    private static final List<Integer> LARGE = IntStream.range(0, 20_000).boxed().collect(Collectors.toList());
+
+    @Test
+    void testExplicitStrategy() {
+        ExecutionPlan sequential = Aggregator.of(LARGE).count("count").explain();
+        assertEquals(ExecutionPlan.Strategy.SEQUENTIAL, sequential.getStrategy());
+        assertFalse(sequential.isAdaptive());
+
+        ExecutionPlan parallel = Aggregator.of(LARGE).count("count").parallel().explain();
+        assertEquals(ExecutionPlan.Strategy.RANGE_PARALLEL, parallel.getStrategy());
+        assertFalse(parallel.isAdaptive());
+    }
+
+    @Test
+    void testSmallInputStaysSequential() {
+        ExecutionPlan plan = Aggregator.of(LARGE.subList(0, 100))
+                .adaptive()
+                .median("median", n -> n)
+                .explain();
+
+        assertEquals(ExecutionPlan.Strategy.SEQUENTIAL, plan.getStrategy());
+        assertTrue(plan.isAdaptive());
+        assertEquals(100, plan.getRows());
+        assertFalse(plan.getReason().isEmpty());
+    }
+
+    @Test
+    void testSingleWorkerStaysSequential() {
+        ExecutionPlan plan = ExecutionPlanner.decide(1_000_000, 1, 10_000, -1, false, false);
+
+        assertEquals(ExecutionPlan.Strategy.SEQUENTIAL, plan.getStrategy());
+        assertTrue(plan.getReason().contains("single worker"), plan.getReason());
+    }
+
+    @Test
+    void testCheapRowsStaySequential() {
+        // 20 000 строк по 100 нс на 4 потока - 500 мкс на поток, меньше порога в 1 мс
+        ExecutionPlan plan = ExecutionPlanner.decide(20_000, 4, 100, -1, false, false);
+
+        assertEquals(ExecutionPlan.Strategy.SEQUENTIAL, plan.getStrategy(), plan.toString());
+        assertEquals(100, plan.getCostPerRowNanos());
+    }
+
+    @Test
+    void testExpensiveRowsRunInParallel() {
+        ExecutionPlan plan = ExecutionPlanner.decide(20_000, 4, 1_000, -1, false, false);
+
+        assertEquals(ExecutionPlan.Strategy.RANGE_PARALLEL, plan.getStrategy(), plan.toString());
+        assertTrue(plan.isAdaptive());
+        assertEquals(4, plan.getParallelism());
+        assertEquals(-1, plan.getEstimatedGroups());
+    }
+
+    @Test
+    void testMergeHeavyTasksRequireMoreWork() {
+        // 2,5 мс на поток достаточно для обычных задач, но меньше 4 мс, требуемых для задач с копирующим слиянием
+        assertEquals(ExecutionPlan.Strategy.RANGE_PARALLEL,
+                ExecutionPlanner.decide(20_000, 4, 500, -1, false, false).getStrategy());
+        assertEquals(ExecutionPlan.Strategy.SEQUENTIAL,
+                ExecutionPlanner.decide(20_000, 4, 500, -1, false, true).getStrategy());
+    }
+
+    @Test
+    void testGroupingStrategyFollowsCardinality() {
+        ExecutionPlan fewGroups = ExecutionPlanner.decide(20_000, 4, 1_000, 4, true, false);
+        assertEquals(ExecutionPlan.Strategy.RANGE_PARALLEL, fewGroups.getStrategy(), fewGroups.toString());
+        assertEquals(4, fewGroups.getEstimatedGroups());
+
+        ExecutionPlan manyGroups = ExecutionPlanner.decide(20_000, 4, 1_000, 20_000, true, false);
+        assertEquals(ExecutionPlan.Strategy.CONCURRENT_GROUPING, manyGroups.getStrategy(), manyGroups.toString());
+    }
+
+    @Test
+    void testStaticCostModel() {
+        List<AggregationTask<Integer>> tasks = Aggregator.of(LARGE)
+                .count("count")
+                .sum("sum", n -> n)
+                .median("median", n -> n)
+                .tasks;
+
+        double model = ExecutionPlanner.staticCost(tasks, false);
+        assertEquals(2 * ExecutionPlanner.TASK_COST_NANOS + ExecutionPlanner.HEAVY_TASK_COST_NANOS, model);
+        assertEquals(model + ExecutionPlanner.GROUPING_COST_NANOS, ExecutionPlanner.staticCost(tasks, true));
+
+        // Время холодного кода одного порядка с моделью не учитывается, время дорогих функций - учитывается
+        assertEquals(0, ExecutionPlanner.discountColdCode(model * 8, model));
+        assertEquals(model * 100, ExecutionPlanner.discountColdCode(model * 100, model));
+    }
+
+    @Test
+    void testPlanIsReusedAndRecorded() {
+        AtomicInteger calls = new AtomicInteger();
+        Aggregator<Integer> aggregator = Aggregator.of(LARGE)
+                .adaptive()
+                .average("avg", n -> {
+                    calls.incrementAndGet();
+                    return n;
+                });
+        assertNull(aggregator.lastPlan());
+
+        ExecutionPlan plan = aggregator.explain();
+        int sampled = calls.get();
+        assertSame(plan, aggregator.explain());
+        assertEquals(sampled, calls.get());
+
+        aggregator.aggregate();
+        assertSame(plan, aggregator.lastPlan());
+        assertEquals(sampled + LARGE.size(), calls.get());
+
+        // Новая задача меняет запрос, поэтому план строится заново
+        aggregator.count("count");
+        assertNotSame(plan, aggregator.explain());
+    }
+
+    @Test
+    void testSharedAggregatorAcrossThreads() throws Exception {
+        GroupingAggregator<Integer, List<Object>> aggregator = Aggregator.groupBy(LARGE, n -> n % 10)
+                .adaptive()
+                .count("count");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Map<List<Object>, AggregationResult>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> aggregator.aggregate()));
+            }
+            for (Future<Map<List<Object>, AggregationResult>> future : futures) {
+                assertEquals(2_000L, future.get().get(List.of(3)).getCount("count"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertSame(aggregator.explain(), aggregator.explain());
+        assertNotNull(aggregator.lastPlan());
+    }
+
+    @Test
+    void testAggregateRunsGivenPlan() {
+        GroupingAggregator<Integer, List<Object>> aggregator = Aggregator.groupBy(LARGE, n -> n % 100)
+                .count("count")
+                .sum("sum", n -> n);
+        Map<List<Object>, AggregationResult> expected = aggregator.aggregate();
+
+        for (ExecutionPlan.Strategy strategy : ExecutionPlan.Strategy.values()) {
+            ExecutionPlan plan = new ExecutionPlan(strategy, "test", false, LARGE.size(), 4, -1, -1);
+            Map<List<Object>, AggregationResult> result = aggregator.aggregate(plan);
+
+            assertSame(plan, aggregator.lastPlan());
+            assertEquals(expected.size(), result.size(), strategy.name());
+            assertEquals(200L, result.get(List.of(7)).getCount("count"), strategy.name());
+            assertEquals(expected.get(List.of(7)).getSum("sum"), result.get(List.of(7)).getSum("sum"), strategy.name());
+        }
+
+        Aggregator<Integer> plain = Aggregator.of(LARGE).count("count");
+        ExecutionPlan concurrent = new ExecutionPlan(ExecutionPlan.Strategy.CONCURRENT_GROUPING, "test", false, LARGE.size(), 4, -1, -1);
+        assertEquals(20_000L, plain.aggregate(concurrent).getCount("count"));
+    }
+
+    @Test
+    void testParallelOverridesAdaptive() {
+        ExecutionPlan plain = Aggregator.of(LARGE).adaptive().count("count").parallel().explain();
+        assertEquals(ExecutionPlan.Strategy.RANGE_PARALLEL, plain.getStrategy());
+        assertFalse(plain.isAdaptive());
+
+        ExecutionPlan grouped = Aggregator.groupBy(LARGE, n -> n % 4).adaptive().count("count").parallel().explain();
+        assertEquals(ExecutionPlan.Strategy.RANGE_PARALLEL, grouped.getStrategy());
+        assertFalse(grouped.isAdaptive());
+
+        assertTrue(Aggregator.of(LARGE).parallel().count("count").adaptive().explain().isAdaptive());
+    }
+}
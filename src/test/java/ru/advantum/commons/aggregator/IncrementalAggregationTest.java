@@ -0,0 +1,227 @@
+package ru.advantum.commons.aggregator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalAggregationTest {
+
+    private List<Trip> trips;
+
+    @BeforeEach
+    void setUp() {
+        trips = new ArrayList<>(Arrays.asList(
+                new Trip("A", 10, new BigDecimal("1.50")),
+                new Trip("A", 20, new BigDecimal("2.50")),
+                new Trip("B", 30, new BigDecimal("3.00")),
+                new Trip("A", 40, new BigDecimal("4.25")),
+                new Trip("B", 50, new BigDecimal("5.00"))
+        ));
+    }
+
+    @Test
+    void testAddRemoveUpdate() {
+        IncrementalAggregation<Trip> incremental = Aggregator.of(trips)
+                .count("count")
+                .sum("sum", Trip::getCost)
+                .average("avg", Trip::getDistance)
+                .variance("var", Trip::getDistance)
+                .min("min", Trip::getDistance)
+                .max("max", Trip::getDistance)
+                .median("median", Trip::getDistance)
+                .distinct("routes", Trip::getRoute)
+                .incremental();
+
+        Trip removed = trips.remove(4);
+        incremental.remove(removed);
+        Trip added = new Trip("C", 5, new BigDecimal("0.75"));
+        trips.add(added);
+        incremental.add(added);
+        Trip changed = new Trip("A", 100, new BigDecimal("9.99"));
+        incremental.update(trips.set(1, changed), changed);
+
+        AggregationResult result = incremental.result();
+        assertEquals(5L, result.getCount("count"));
+        assertEquals(new BigDecimal("19.49"), result.getSum("sum"));
+        assertEquals(37.0, result.getAverage("avg"), 1e-9);
+        assertEquals(1156.0, result.getVariance("var"), 1e-9);
+        assertEquals(5, (Integer) result.getMin("min"));
+        assertEquals(100, (Integer) result.getMax("max"));
+        assertEquals(new BigDecimal("30"), result.getMedian("median"));
+        assertEquals(Set.of("A", "B", "C"), result.getDistinct("routes"));
+    }
+
+    @Test
+    void testRandomEditsMatchFullAggregation() {
+        Random random = new Random(11);
+        List<Trip> data = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            data.add(randomTrip(random));
+        }
+        IncrementalAggregation<Trip> incremental = fullAggregator(data).incremental();
+
+        for (int i = 0; i < 500; i++) {
+            int index = random.nextInt(data.size());
+            switch (random.nextInt(3)) {
+                case 0:
+                    Trip trip = randomTrip(random);
+                    data.add(trip);
+                    incremental.add(trip);
+                    break;
+                case 1:
+                    incremental.remove(data.remove(index));
+                    break;
+                default:
+                    Trip changed = randomTrip(random);
+                    incremental.update(data.set(index, changed), changed);
+            }
+        }
+
+        AggregationResult expected = fullAggregator(data).aggregate();
+        AggregationResult actual = incremental.result();
+        assertEquals(expected.getCount("count"), actual.getCount("count"));
+        assertEquals(0, expected.getSum("sum").compareTo(actual.getSum("sum")));
+        assertEquals(expected.getAverage("avg"), actual.getAverage("avg"), 1e-9);
+        assertEquals(expected.getVariance("var"), actual.getVariance("var"), 1e-6);
+        assertEquals((Integer) expected.getMin("min"), actual.getMin("min"));
+        assertEquals((Integer) expected.getMax("max"), actual.getMax("max"));
+        assertEquals(0, expected.<BigDecimal>getMedian("median").compareTo(actual.getMedian("median")));
+        assertEquals(expected.getDistinct("routes"), actual.getDistinct("routes"));
+    }
+
+    @Test
+    void testVarianceWithLargeOffset() {
+        List<Long> timestamps = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            timestamps.add(1_700_000_000_000L + i % 10);
+        }
+        IncrementalAggregation<Long> incremental = Aggregator.of(timestamps)
+                .variance("var", t -> t)
+                .incremental();
+
+        assertEquals(8.25, Aggregator.of(timestamps).variance("var", t -> t).aggregate().getVariance("var"), 1e-4);
+        assertEquals(8.25, incremental.result().getVariance("var"), 1e-4);
+
+        // Удаляем все значения с остатком 9 и заменяем остаток 0 на 9
+        Random random = new Random(5);
+        List<Long> current = new ArrayList<>(timestamps);
+        for (int i = 0; i < 500; i++) {
+            int index = random.nextInt(current.size());
+            Long old = current.get(index);
+            if (old % 10 == 9) {
+                incremental.remove(current.remove(index));
+            } else if (old % 10 == 0) {
+                Long changed = old + 9;
+                incremental.update(current.set(index, changed), changed);
+            }
+        }
+
+        double expected = Aggregator.of(current).variance("var", t -> t).aggregate().getVariance("var");
+        assertEquals(expected, incremental.result().getVariance("var"), 1e-4);
+    }
+
+    @Test
+    void testRemoveLastElement() {
+        IncrementalAggregation<Trip> incremental = Aggregator.of(trips.subList(0, 1))
+                .count("count")
+                .min("min", Trip::getDistance)
+                .median("median", Trip::getDistance)
+                .incremental();
+
+        incremental.remove(trips.get(0));
+
+        AggregationResult result = incremental.result();
+        assertEquals(0L, result.getCount("count"));
+        assertNull(result.getMin("min"));
+        assertNull(result.getMedian("median"));
+    }
+
+    @Test
+    void testRemoveUnknownItemIsRejected() {
+        IncrementalAggregation<Trip> incremental = fullAggregator(trips).incremental();
+        Trip unknown = new Trip("Z", 999, new BigDecimal("1.00"));
+
+        assertThrows(IllegalArgumentException.class, () -> incremental.remove(unknown));
+        assertThrows(IllegalArgumentException.class, () -> incremental.update(unknown, trips.get(0)));
+
+        // Состояние не изменилось
+        assertEquals(5, incremental.size());
+        AggregationResult expected = fullAggregator(trips).aggregate();
+        AggregationResult actual = incremental.result();
+        assertEquals(expected.getCount("count"), actual.getCount("count"));
+        assertEquals(0, expected.getSum("sum").compareTo(actual.getSum("sum")));
+        assertEquals((Integer) expected.getMax("max"), actual.getMax("max"));
+        assertEquals(expected.getDistinct("routes"), actual.getDistinct("routes"));
+
+        IncrementalAggregation<Trip> countOnly = Aggregator.of(List.<Trip>of()).count("count").incremental();
+        assertThrows(IllegalArgumentException.class, () -> countOnly.remove(unknown));
+        assertEquals(0L, countOnly.result().getCount("count"));
+
+        IncrementalGroupingAggregation<Trip, List<Object>> grouped = Aggregator.groupBy(trips, Trip::getRoute)
+                .count("count")
+                .max("max", Trip::getDistance)
+                .incremental();
+        assertThrows(IllegalArgumentException.class, () -> grouped.remove(unknown));
+        assertThrows(IllegalArgumentException.class, () -> grouped.remove(new Trip("A", 999, BigDecimal.ONE)));
+        assertEquals(3L, grouped.result(List.of("A")).getCount("count"));
+    }
+
+    @Test
+    void testGroupingIncremental() {
+        IncrementalGroupingAggregation<Trip, List<Object>> incremental = Aggregator.groupBy(trips, Trip::getRoute)
+                .count("count")
+                .max("max", Trip::getDistance)
+                .incremental();
+
+        // Элемент переходит из группы B в группу A, группа B теряет максимум
+        Trip moved = new Trip("A", 50, new BigDecimal("5.00"));
+        incremental.update(trips.get(4), moved);
+        incremental.remove(trips.get(2));
+
+        Map<List<Object>, AggregationResult> result = incremental.result();
+        assertEquals(1, result.size());
+        assertNull(incremental.result(List.of("B")));
+
+        AggregationResult groupA = result.get(List.of("A"));
+        assertEquals(4L, groupA.getCount("count"));
+        assertEquals(50, (Integer) groupA.getMax("max"));
+    }
+
+    private static Aggregator<Trip> fullAggregator(List<Trip> data) {
+        return Aggregator.of(data)
+                .count("count")
+                .sum("sum", Trip::getCost)
+                .average("avg", Trip::getDistance)
+                .variance("var", Trip::getDistance)
+                .min("min", Trip::getDistance)
+                .max("max", Trip::getDistance)
+                .median("median", Trip::getDistance)
+                .distinct("routes", Trip::getRoute);
+    }
+
+    private static Trip randomTrip(Random random) {
+        return new Trip("R" + random.nextInt(5), random.nextInt(100), BigDecimal.valueOf(random.nextInt(10_000), 2));
+    }
+
+    private static class Trip {
+        private final String route;
+        private final int distance;
+        private final BigDecimal cost;
+
+        Trip(String route, int distance, BigDecimal cost) {
+            this.route = route; this.distance = distance; this.cost = cost;
+        }
+        public String getRoute() { return route; }
+        public int getDistance() { return distance; }
+        public BigDecimal getCost() { return cost; }
+    }
+}
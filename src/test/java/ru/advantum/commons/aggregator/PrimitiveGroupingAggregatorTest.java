@@ -0,0 +1,198 @@
+package ru.advantum.commons.aggregator;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveGroupingAggregatorTest {
+
+    @Test
+    void testGroupByInt() {
+        List<Stop> stops = List.of(
+                new Stop(7, 0L, 1.5),
+                new Stop(3, 0L, 4.0),
+                new Stop(7, 0L, 2.5),
+                new Stop(-1, 0L, 10.0)
+        );
+
+        Map<Integer, AggregationResult> result = Aggregator.groupByInt(stops, Stop::getStopId)
+                .count("count")
+                .sum("sum", Stop::getDelay)
+                .average("avg", Stop::getDelay)
+                .min("min", Stop::getDelay)
+                .max("max", Stop::getDelay)
+                .aggregate();
+
+        assertEquals(3, result.size());
+        AggregationResult stop7 = result.get(7);
+        assertEquals(2L, stop7.getCount("count"));
+        assertEquals(0, new BigDecimal("4.0").compareTo(stop7.getSum("sum")));
+        assertEquals(2.0, stop7.getAverage("avg"), 0.0);
+        assertEquals(1.5, (Double) stop7.getMin("min"), 0.0);
+        assertEquals(2.5, (Double) stop7.getMax("max"), 0.0);
+        assertEquals(1L, result.get(-1).getCount("count"));
+    }
+
+    @Test
+    void testGroupByLongMatchesHashGrouping() {
+        assertMatchesHashGrouping(false);
+    }
+
+    @Test
+    void testOffHeapMatchesHashGrouping() {
+        assertMatchesHashGrouping(true);
+    }
+
+    @Test
+    void testTableGrowthWithExtremeKeys() {
+        List<Stop> stops = new ArrayList<>();
+        long[] extremes = {0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (long key : extremes) {
+            stops.add(new Stop(0, key, 1.0));
+        }
+        // Ключи с одинаковыми младшими битами проверяют разрешение коллизий
+        for (long i = 1; i <= 50_000; i++) {
+            stops.add(new Stop(0, i << 32, 1.0));
+            stops.add(new Stop(0, i << 32, 2.0));
+        }
+
+        Map<Long, AggregationResult> result = Aggregator.groupByLong(stops, Stop::getEpochDay)
+                .count("count")
+                .aggregate();
+
+        assertEquals(50_004, result.size());
+        for (long key : extremes) {
+            assertEquals(1L, result.get(key).getCount("count"));
+        }
+        assertEquals(2L, result.get(50_000L << 32).getCount("count"));
+    }
+
+    @Test
+    void testLongTasksMatchHashGrouping() {
+        // Значения больше 2^53 не представимы в double точно
+        long nanos = 1_700_000_000_000_000_001L;
+        List<Stop> stops = List.of(
+                new Stop(1, nanos, 0.1),
+                new Stop(1, nanos + 2, 0.2),
+                new Stop(2, 9_007_199_254_740_993L, 0.0),
+                new Stop(2, 1L, 0.0),
+                new Stop(3, Long.MAX_VALUE, 0.0),
+                new Stop(3, Long.MAX_VALUE, 0.0)
+        );
+        ToDoubleFunction<Object> zero = o -> 0.0;
+
+        Map<Integer, AggregationResult> actual = Aggregator.groupByInt(stops, Stop::getStopId)
+                .sumLong("sum", Stop::getEpochDay)
+                .minLong("min", Stop::getEpochDay)
+                .maxLong("max", Stop::getEpochDay)
+                .average("zero", zero)
+                .aggregate();
+        Map<List<Object>, AggregationResult> expected = Aggregator.groupBy(stops, Stop::getStopId)
+                .sum("sum", Stop::getEpochDay)
+                .min("min", Stop::getEpochDay)
+                .max("max", Stop::getEpochDay)
+                .aggregate();
+
+        assertEquals(expected.size(), actual.size());
+        expected.forEach((key, result) -> {
+            AggregationResult group = actual.get((Integer) key.get(0));
+            assertEquals(result.getSum("sum"), group.getSum("sum"));
+            assertEquals((Long) result.getMin("min"), group.getMin("min"));
+            assertEquals((Long) result.getMax("max"), group.getMax("max"));
+        });
+        assertEquals(nanos + 2, (Long) actual.get(1).getMax("max"));
+        assertEquals(new BigDecimal("9007199254740994"), actual.get(2).getSum("sum"));
+        assertEquals(new BigDecimal(Long.MAX_VALUE).multiply(BigDecimal.valueOf(2)), actual.get(3).getSum("sum"));
+    }
+
+    @Test
+    void testNonFiniteSum() {
+        List<Stop> stops = List.of(new Stop(1, 0L, 1.0), new Stop(1, 0L, Double.NaN), new Stop(2, 0L, 3.0));
+
+        Map<Integer, AggregationResult> result = Aggregator.groupByInt(stops, Stop::getStopId)
+                .sum("sum", Stop::getDelay)
+                .aggregate();
+
+        assertTrue(result.get(1).getDoubleSum("sum").isNaN());
+        assertEquals(0, new BigDecimal("3.0").compareTo(result.get(2).getSum("sum")));
+    }
+
+    @Test
+    void testOffHeapSlotsSpanPages() {
+        // Страницы по 16 ячеек, чтобы проверить переход между страницами на малом объеме
+        AccumulatorSlots slots = AccumulatorSlots.offHeap(3, 4);
+        long size = 1000;
+        slots.ensureCapacity(10);
+        for (long slot = 0; slot < 10; slot++) {
+            slots.set(slot, slot);
+        }
+        slots.ensureCapacity(size);
+        for (long slot = 10; slot < size; slot++) {
+            slots.set(slot, slot);
+        }
+        for (long slot = 0; slot < size; slot++) {
+            assertEquals(slot, slots.get(slot), 0.0);
+        }
+    }
+
+    @Test
+    void testHeapSlotsLimitIsReported() {
+        AccumulatorSlots slots = AccumulatorSlots.onHeap(16);
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> slots.ensureCapacity(AccumulatorSlots.MAX_HEAP_SLOTS + 1));
+        assertTrue(e.getMessage().contains("offHeap()"));
+    }
+
+    private static void assertMatchesHashGrouping(boolean offHeap) {
+        Random random = new Random(3);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            stops.add(new Stop(0, random.nextInt(3000) - 1500L, random.nextInt(1000) / 10.0));
+        }
+
+        PrimitiveGroupingAggregator<Stop, Long> aggregator = Aggregator.groupByLong(stops, Stop::getEpochDay)
+                .expectedGroups(4)
+                .count("count")
+                .average("avg", Stop::getDelay)
+                .max("max", Stop::getDelay);
+        if (offHeap) {
+            aggregator.offHeap();
+        }
+        Map<Long, AggregationResult> actual = aggregator.aggregate();
+
+        Map<List<Object>, AggregationResult> expected = Aggregator.groupBy(stops, Stop::getEpochDay)
+                .count("count")
+                .average("avg", Stop::getDelay)
+                .max("max", Stop::getDelay)
+                .aggregate();
+
+        assertEquals(expected.size(), actual.size());
+        expected.forEach((key, result) -> {
+            AggregationResult group = actual.get((Long) key.get(0));
+            assertNotNull(group);
+            assertEquals(result.getCount("count"), group.getCount("count"));
+            assertEquals(result.getAverage("avg"), group.getAverage("avg"), 1e-9);
+            assertEquals((Double) result.getMax("max"), group.getMax("max"));
+        });
+    }
+
+    private static class Stop {
+        private final int stopId;
+        private final long epochDay;
+        private final double delay;
+
+        Stop(int stopId, long epochDay, double delay) {
+            this.stopId = stopId; this.epochDay = epochDay; this.delay = delay;
+        }
+        public int getStopId() { return stopId; }
+        public long getEpochDay() { return epochDay; }
+        public double getDelay() { return delay; }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.advantum.commons.aggregator.kernels;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class NumericKernelsTest {
+
+    // Длины, не кратные ширине вектора, проверяют обработку хвоста
+    private static final int[] SIZES = {0, 1, 3, 7, 8, 15, 16, 17, 63, 64, 65, 1000, 4099};
+
+    private final NumericKernels scalar = NumericKernels.scalar();
+    private final NumericKernels vector = NumericKernels.get();
+
+    @Test
+    void testScalarKernels() {
+        double[] doubles = {3.0, -1.5, 7.25, 0.0};
+        long[] longs = {3L, -2L, 10L};
+
+        assertEquals(8.75, scalar.sum(doubles), 0.0);
+        assertEquals(-1.5, scalar.min(doubles), 0.0);
+        assertEquals(7.25, scalar.max(doubles), 0.0);
+        assertEquals(2L, scalar.countWhere(doubles, 0.0, 5.0));
+        assertEquals(9.0 + 2.25 + 52.5625, scalar.sumOfSquares(doubles), 1e-9);
+
+        assertEquals(BigInteger.valueOf(11L), scalar.sum(longs));
+        assertEquals(-2L, scalar.min(longs));
+        assertEquals(10L, scalar.max(longs));
+        assertEquals(1L, scalar.countWhere(longs, 0L, 5L));
+        assertEquals(113.0, scalar.sumOfSquares(longs), 0.0);
+    }
+
+    @Test
+    void testVectorKernelsSelectedWhenAvailable() {
+        assumeTrue(Runtime.version().feature() >= 17 && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "Vector API недоступен");
+        assertEquals("VectorNumericKernels", vector.getClass().getSimpleName());
+    }
+
+    @Test
+    void testLongSumDoesNotOverflow() {
+        long[] values = new long[10];
+        Arrays.fill(values, Long.MAX_VALUE / 5);
+        BigInteger expected = BigInteger.valueOf(Long.MAX_VALUE / 5).multiply(BigInteger.TEN);
+
+        assertEquals(new BigInteger("18446744073709551610"), expected);
+        assertEquals(expected, scalar.sum(values));
+        assertEquals(expected, vector.sum(values));
+
+        long[] mixed = {Long.MIN_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, -1L, 1L, Long.MIN_VALUE, 7L, Long.MAX_VALUE, Long.MIN_VALUE};
+        BigInteger exact = Arrays.stream(mixed).mapToObj(BigInteger::valueOf).reduce(BigInteger.ZERO, BigInteger::add);
+        assertEquals(exact, scalar.sum(mixed));
+        assertEquals(exact, vector.sum(mixed));
+    }
+
+    @Test
+    void testVectorDoublesMatchScalar() {
+        assumeTrue(vector != scalar, "Vector API недоступен");
+        Random random = new Random(42);
+        for (int size : SIZES) {
+            double[] values = random.doubles(size, -1000.0, 1000.0).toArray();
+            double tolerance = 1e-9 * Math.max(1.0, scalar.sumOfSquares(values));
+
+            assertEquals(scalar.sum(values), vector.sum(values), tolerance, "sum, size=" + size);
+            assertEquals(scalar.min(values), vector.min(values), 0.0, "min, size=" + size);
+            assertEquals(scalar.max(values), vector.max(values), 0.0, "max, size=" + size);
+            assertEquals(scalar.countWhere(values, -100.0, 250.0), vector.countWhere(values, -100.0, 250.0), "countWhere, size=" + size);
+            assertEquals(scalar.sumOfSquares(values), vector.sumOfSquares(values), tolerance, "sumOfSquares, size=" + size);
+        }
+    }
+
+    @Test
+    void testVectorLongsMatchScalar() {
+        assumeTrue(vector != scalar, "Vector API недоступен");
+        Random random = new Random(7);
+        for (int size : SIZES) {
+            long[] values = random.longs(size, -1_000_000L, 1_000_000L).toArray();
+
+            assertEquals(scalar.sum(values), vector.sum(values), "sum, size=" + size);
+            assertEquals(scalar.min(values), vector.min(values), "min, size=" + size);
+            assertEquals(scalar.max(values), vector.max(values), "max, size=" + size);
+            assertEquals(scalar.countWhere(values, -1000L, 500_000L), vector.countWhere(values, -1000L, 500_000L), "countWhere, size=" + size);
+            assertEquals(scalar.sumOfSquares(values), vector.sumOfSquares(values), 1e-9 * Math.max(1.0, scalar.sumOfSquares(values)), "sumOfSquares, size=" + size);
+        }
+    }
+
+}